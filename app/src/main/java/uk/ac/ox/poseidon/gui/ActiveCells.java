@@ -0,0 +1,70 @@
+/*
+ * POSEIDON, an agent-based model of fisheries
+ * Copyright (c) 2023, CoHESyS Lab, cohesys.lab@gmail.com.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.ox.poseidon.gui;
+
+import java.util.Arrays;
+
+/**
+ * A set of cell indices with constant time add, remove and membership, and iteration over the members only
+ */
+class ActiveCells {
+
+    /**
+     * where each cell is in the member list, -1 if it isn't a member
+     */
+    private final int[] position;
+
+    private int[] members = new int[16];
+
+    private int size = 0;
+
+    ActiveCells(int cells) {
+        position = new int[cells];
+        Arrays.fill(position, -1);
+    }
+
+    void add(int cell) {
+        if (position[cell] >= 0) return;
+        if (size == members.length) members = Arrays.copyOf(members, size * 2);
+        members[size] = cell;
+        position[cell] = size;
+        size++;
+    }
+
+    void remove(int cell) {
+        final int index = position[cell];
+        if (index < 0) return;
+        // the last member takes its place
+        final int last = members[--size];
+        members[index] = last;
+        position[last] = index;
+        position[cell] = -1;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * the i-th member; removing members reorders them
+     */
+    int get(int i) {
+        return members[i];
+    }
+}
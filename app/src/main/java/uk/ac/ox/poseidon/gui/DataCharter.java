@@ -73,6 +73,13 @@ public class DataCharter {
     }
 
     public void start(GUIState gui) {
+        start(gui, null);
+    }
+
+    /**
+     * @param updates if not null the chart is redrawn through it, at most once per frame
+     */
+    public void start(GUIState gui, GuiUpdateBus updates) {
 
         Preconditions.checkState(stoppable == null, "Already started!");
 
@@ -114,7 +121,9 @@ public class DataCharter {
                 assert entry.getValue().getItemCount() == entry.getKey().size();
             }
 
-            chart.updateChartLater(simState.schedule.getSteps());
+            final long steps = simState.schedule.getSteps();
+            if (updates == null) chart.updateChartLater(steps);
+            else updates.post(chart, () -> chart.updateChartLater(steps));
         });
 
         // make visible
@@ -20,19 +20,34 @@ package uk.ac.ox.poseidon.gui;
 
 import ec.util.MersenneTwisterFast;
 import java.awt.*;
-import java.util.HashMap;
-import java.util.function.Function;
+import java.util.Arrays;
 import sim.util.gui.ColorMap;
 import uk.ac.ox.oxfish.utility.FishStateUtilities;
 
 /**
+ * Gives a random color to each integer level, picked the first time the level is asked for.
+ * Colors are kept in a growing ARGB palette indexed by level, so getRGB is an array lookup. Levels are clamped
+ * to [-1, MAX_LEVEL] so that a stray huge level can't make the palette huge.
  * Created by carrknight on 11/30/16.
  */
 public class DiscreteColorMap implements ColorMap {
 
+    /**
+     * the lowest level with its own color: encodings use -1 for "no group"; anything below shares its color
+     */
+    private static final int LOWEST_LEVEL = -1;
+
+    /**
+     * the highest level with its own color; anything above shares its color
+     */
+    public static final int MAX_LEVEL = (1 << 16) - 2;
+
     private final MersenneTwisterFast randomizer;
 
-    HashMap<Integer, Color> colorsPreAssigned = new HashMap<>();
+    /**
+     * ARGB of each level (offset by LOWEST_LEVEL); 0 means the level has no color yet since assigned ones are opaque
+     */
+    private int[] palette = new int[16];
 
     public DiscreteColorMap(MersenneTwisterFast randomizer) {
         this.randomizer = randomizer;
@@ -40,18 +55,23 @@ public class DiscreteColorMap implements ColorMap {
 
     @Override
     public Color getColor(double v) {
-        int discretized = (int) v;
-        return colorsPreAssigned.computeIfAbsent(discretized, new Function<Integer, Color>() {
-            @Override
-            public Color apply(Integer integer) {
-                return new Color(randomizer.nextInt(256), randomizer.nextInt(256), randomizer.nextInt(256), 255);
-            }
-        });
+        return new Color(getRGB(v), true);
     }
 
     @Override
     public int getRGB(double v) {
-        return getColor(v).getRGB();
+        final int index = Math.min(Math.max((int) v, LOWEST_LEVEL), MAX_LEVEL) - LOWEST_LEVEL;
+        if (index >= palette.length)
+            palette = Arrays.copyOf(palette, Math.min(Math.max(index + 1, palette.length * 2), MAX_LEVEL + 2));
+        int rgb = palette[index];
+        if (rgb == 0) {
+            final int red = randomizer.nextInt(256);
+            final int green = randomizer.nextInt(256);
+            final int blue = randomizer.nextInt(256);
+            rgb = 0xFF000000 | (red << 16) | (green << 8) | blue;
+            palette[index] = rgb;
+        }
+        return rgb;
     }
 
     @Override
@@ -0,0 +1,120 @@
+/*
+ * POSEIDON, an agent-based model of fisheries
+ * Copyright (c) 2023, CoHESyS Lab, cohesys.lab@gmail.com.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.ox.poseidon.gui;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Exponentially weighted average of each cell's trawls: old trawls fade away rather than dropping out of a window.
+ * <p>
+ * Rather than decaying every cell every day, the values are kept inflated by a scale that grows by 1/(1-alpha) a
+ * day: a cell only changes when it is trawled, and the color levels are scaled instead. Once in a while the scale
+ * gets too large and the values are brought back to their real size. The smoothed values are all the memory it
+ * needs, besides the list of cells that aren't 0.
+ */
+public class ExponentialTrawlSmoother implements TrawlSmoother {
+
+    /**
+     * when the scale gets this large the values are rescaled, long before doubles run out of precision
+     */
+    private static final double RESCALE_AT = 1e100;
+
+    /**
+     * after rescaling, values below this are as good as 0 and stop being tracked
+     */
+    private static final double NEGLIGIBLE = 1e-9;
+
+    /**
+     * weight of today's trawls in the average
+     */
+    private final double alpha;
+
+    private final int height;
+
+    /**
+     * cells with a value
+     */
+    private final ActiveCells active;
+
+    /**
+     * (1-alpha)^-days since the last rescaling
+     */
+    private double scale = 1;
+
+    /**
+     * the highest value, scaled. Scaled values only ever grow, so this is easy to keep
+     */
+    private double maximum = 0;
+
+    public ExponentialTrawlSmoother(int width, int height, double alpha) {
+        Preconditions.checkArgument(alpha > 0 && alpha < 1, "alpha must be in (0,1)");
+        this.alpha = alpha;
+        this.height = height;
+        this.active = new ActiveCells(width * height);
+    }
+
+    /**
+     * the exponential average whose weights have roughly the same center of mass as a moving average over
+     * that many days
+     */
+    public static ExponentialTrawlSmoother equivalentToWindow(int width, int height, int days) {
+        return new ExponentialTrawlSmoother(width, height, 2d / (days + 1));
+    }
+
+    @Override
+    public double step(TrawlEvents today, double[][] smoothed) {
+        scale /= 1 - alpha;
+        if (scale > RESCALE_AT) rescale(smoothed);
+
+        for (int i = 0; i < today.size(); i++) {
+            final int x = today.getX(i);
+            final int y = today.getY(i);
+            smoothed[x][y] += alpha * today.getCount(i) * scale;
+            active.add(x * height + y);
+            if (smoothed[x][y] > maximum) maximum = smoothed[x][y];
+        }
+        return maximum / scale;
+    }
+
+    /**
+     * bring all values back to their real size, forgetting the ones that have faded away
+     */
+    private void rescale(double[][] smoothed) {
+        maximum = 0;
+        for (int i = active.size() - 1; i >= 0; i--) {
+            final int cell = active.get(i);
+            final double[] column = smoothed[cell / height];
+            column[cell % height] /= scale;
+            if (column[cell % height] < NEGLIGIBLE) {
+                column[cell % height] = 0;
+                active.remove(cell);
+            } else if (column[cell % height] > maximum) maximum = column[cell % height];
+        }
+        scale = 1;
+    }
+
+    @Override
+    public double getScale() {
+        return scale;
+    }
+
+    public double getAlpha() {
+        return alpha;
+    }
+}
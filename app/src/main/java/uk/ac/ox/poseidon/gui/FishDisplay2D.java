@@ -0,0 +1,97 @@
+/*
+ * POSEIDON, an agent-based model of fisheries
+ * Copyright (c) 2023, CoHESyS Lab, cohesys.lab@gmail.com.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.ox.poseidon.gui;
+
+import java.awt.*;
+import javax.swing.*;
+import javax.swing.plaf.LayerUI;
+import sim.display.Display2D;
+import sim.display.GUIState;
+import sim.engine.SimState;
+
+/**
+ * A Display2D that doesn't repaint after every model step but only when its {@link RenderScheduler} says a frame
+ * is due. The model thread only asks for the repaint and goes on stepping. The map is painted on the EDT while
+ * holding the schedule lock, so a frame always shows the model between two steps and never half a step. How long
+ * painting takes is fed back to the scheduler, which spaces the frames so that the model is never paused for
+ * longer than it runs.
+ */
+public class FishDisplay2D extends Display2D {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final double DEFAULT_FPS = 25;
+
+    /**
+     * no point fast-forwarding further than this between two frames
+     */
+    private static final int MAX_STEPS_PER_FRAME = 10_000;
+
+    private final RenderScheduler scheduler = new RenderScheduler(DEFAULT_FPS, MAX_STEPS_PER_FRAME);
+
+    private final GUIState gui;
+
+    /**
+     * true from when the model asks for a frame until it is painted
+     */
+    private volatile boolean awaitingPaint = false;
+
+    public FishDisplay2D(double width, double height, GUIState simulation) {
+        super(width, height, simulation);
+        this.gui = simulation;
+        // a layer is where every repaint of its view starts from: all the painting of the map goes through it
+        display.setViewportView(new JLayer<JComponent>(insideDisplay, new ConsistentPaint()));
+    }
+
+    @Override
+    public void step(SimState state) {
+        if (!scheduler.frameDue(System.nanoTime())) return;
+        awaitingPaint = true;
+        // only queues the repaint: the model never waits for the EDT
+        super.step(state);
+    }
+
+    public RenderScheduler getScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * paints the map between two steps and times it
+     */
+    private class ConsistentPaint extends LayerUI<JComponent> {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public void paint(Graphics g, JComponent layer) {
+            final long start;
+            final long end;
+            // the model thread holds this lock while stepping and never waits for the EDT while holding it
+            synchronized (gui.state.schedule) {
+                start = System.nanoTime();
+                super.paint(g, layer);
+                end = System.nanoTime();
+            }
+            if (awaitingPaint) {
+                awaitingPaint = false;
+                scheduler.framePainted(start, end);
+            }
+        }
+    }
+}
@@ -21,11 +21,14 @@ package uk.ac.ox.poseidon.gui;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 import java.io.*;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.Map;
 import javax.swing.*;
@@ -35,13 +38,11 @@ import sim.display.Display2D;
 import sim.display.GUIState;
 import sim.engine.SimState;
 import sim.engine.Steppable;
+import sim.engine.Stoppable;
 import sim.portrayal.Inspector;
 import sim.portrayal.LocationWrapper;
-import sim.portrayal.SimplePortrayal2D;
-import sim.portrayal.continuous.ContinuousPortrayal2D;
 import sim.portrayal.geo.GeomPortrayal;
 import sim.portrayal.geo.GeomVectorFieldPortrayal;
-import sim.portrayal.grid.SparseGridPortrayal2D;
 import sim.portrayal.simple.*;
 import uk.ac.ox.oxfish.fisher.Fisher;
 import uk.ac.ox.oxfish.model.FishState;
@@ -58,6 +59,14 @@ import uk.ac.ox.poseidon.gui.drawing.*;
 public class FishGUI extends GUIState {
 
     public static final int MIN_DIMENSION = 600;
+    /**
+     * how many steps of the boats' past positions are drawn
+     */
+    public static final int TRAIL_LENGTH = 50;
+    /**
+     * how much of each frame refreshing inspectors may take, in milliseconds
+     */
+    public static final double INSPECTOR_BUDGET_MILLIS = 4;
     public static Path IMAGES_PATH = Paths.get("inputs", "images");
 
     static {
@@ -88,9 +97,10 @@ public class FishGUI extends GUIState {
 
     private final ColorfulGrid mainPortrayal;
     private final GeomVectorFieldPortrayal mpaPortrayal = new GeomVectorFieldPortrayal(false);
-    private final SparseGridPortrayal2D ports = new SparseGridPortrayal2D();
-    private final SparseGridPortrayal2D boats = new SparseGridPortrayal2D();
-    private final SparseGridPortrayal2D trails = new SparseGridPortrayal2D();
+    private final IndexedSparseGridPortrayal2D ports = new IndexedSparseGridPortrayal2D();
+    private final BoatLayerPortrayal boats = new BoatLayerPortrayal();
+    private final BoatTrailsPortrayal trails = new BoatTrailsPortrayal();
+    private final GroupOutlinePortrayal discretizationOutline = new GroupOutlinePortrayal();
     private final ImageIcon
             portIcon; // = new ImageIcon(FishGUI.class.getClassLoader().getResource("images/anchor.png"));
     private final LinkedList<PolicyButton> policyButtons = new LinkedList<>();
@@ -103,7 +113,37 @@ public class FishGUI extends GUIState {
     private ListChangeListener<Fisher> fisherListListener;
     private ListChangeListener<Fisher> enableDisableFisherListListener;
 
-    private ContinuousPortrayal2D fadMapPortrayal = null;
+    private FadLayerPortrayal fadMapPortrayal = null;
+
+    /**
+     * encodings drawn by more than one display are evaluated once for all of them
+     */
+    private final LayerCache layerCache = new LayerCache();
+
+    /**
+     * what tells each grid on screen that the model stepped; stopped when its window closes
+     */
+    private final Map<ColorfulGrid, Stoppable> stepUpdates = new HashMap<>();
+
+    /**
+     * model-to-GUI updates, coalesced and flushed once per frame
+     */
+    private final GuiUpdateBus updateBus = new GuiUpdateBus();
+
+    /**
+     * how the GUI changes the model without taking the schedule lock on the EDT
+     */
+    private final ModelCommandQueue commands = new ModelCommandQueue(this);
+
+    /**
+     * what the inspectors show, copied by the model at the end of each step
+     */
+    private final SnapshotPublisher snapshots = new SnapshotPublisher();
+
+    /**
+     * refreshes the inspectors on screen, spending at most this long per frame doing so
+     */
+    private final InspectorRefreshScheduler inspectorRefresh = new InspectorRefreshScheduler(INSPECTOR_BUDGET_MILLIS);
 
     /**
      * create a random fishstate with seed = milliseconds since epoch
@@ -120,7 +160,7 @@ public class FishGUI extends GUIState {
      */
     public FishGUI(SimState state) {
         super(state);
-        mainPortrayal = new ColorfulGrid(guirandom);
+        mainPortrayal = new ColorfulGrid(guirandom, layerCache);
 
         portIcon = new ImageIcon(IMAGES_PATH.resolve("anchor.png").toString());
 
@@ -230,6 +270,15 @@ public class FishGUI extends GUIState {
         }
     }
 
+    @Override
+    public void quit() {
+        super.quit();
+        updateBus.stop();
+        commands.stop();
+        snapshots.stop();
+        inspectorRefresh.stop();
+    }
+
     @Override
     public void load(SimState state) {
         super.load(state);
@@ -239,6 +288,8 @@ public class FishGUI extends GUIState {
     private void initialize() {
         final FishGUI self = this; // for anon classes
         FishState state = (FishState) this.state;
+        // MASON drops whatever was scheduled before a (re)start
+        stepUpdates.clear();
 
         // the console label is a pain in the ass so we need to really use a wrecking ball to modify the way
         // the label is used
@@ -249,10 +300,16 @@ public class FishGUI extends GUIState {
         SaveButton saveButton = new SaveButton(this, timeBox.getComponent(0).getSize());
         timeBox.add(saveButton);
 
+        updateBus.start();
+        commands.start();
+        snapshots.start(this);
+        inspectorRefresh.start();
         final JLabel timeLabel = new JLabel("Not Started Yet");
         (timeBox).add(timeLabel);
-        scheduleRepeatingImmediatelyAfter(
-                (Steppable) simState -> SwingUtilities.invokeLater(() -> timeLabel.setText(state.timeString())));
+        scheduleRepeatingImmediatelyAfter((Steppable) simState -> {
+            final String time = state.timeString();
+            updateBus.post(timeLabel, () -> timeLabel.setText(time));
+        });
 
         display2D = setupPortrayal(mainPortrayal);
 
@@ -262,33 +319,42 @@ public class FishGUI extends GUIState {
 
         // fads
         if (state.getFadMap() != null) {
-            fadMapPortrayal = new ContinuousPortrayal2D();
-            fadMapPortrayal.setField(state.getFadMap().getField());
+            // buckets of one map cell, re-sorted every step as the FADs drift
+            FadIndex fadIndex = new FadIndex(state.getFadMap().getField(), 1);
+            scheduleRepeatingImmediatelyAfter(fadIndex);
+            fadMapPortrayal = new FadLayerPortrayal(fadIndex, Color.yellow, 0.5);
+            // still used to inspect the FADs picked
             fadMapPortrayal.setPortrayalForAll(new OvalPortrayal2D(Color.yellow, 0.5));
         }
 
         // boats
-        trails.setField(state.getFisherGrid());
-        trails.setPortrayalForAll(null);
+        BoatTrails boatTrails = new BoatTrails(
+                state.getFisherGrid().getWidth(), state.getFisherGrid().getHeight(), TRAIL_LENGTH);
+        scheduleRepeatingImmediatelyAfter(boatTrails);
+        trails.setField(boatTrails);
+        trails.setColor(Color.BLUE);
+        trails.setSelection(boats::isSelected);
         boats.setField(state.getFisherGrid());
         boats.setPortrayalForRemainder(null);
 
         for (Fisher o : state.getFishers()) {
-            assignPortrayalToFisher(boatPortrayalFactory.build(o), o);
+            assignPortrayalToFisher(o);
         }
         // start listening to the model for changes, but keep track of this because you need to stop listening
         // in the case of savings
         fisherListListener = new ListChangeListener<Fisher>() {
             @Override
             public void onChanged(Change<? extends Fisher> c) {
+                // keyed by fisher: only its latest change matters
                 while (c.next()) {
-                    for (Fisher fisher : c.getRemoved()) {
-                        boats.setPortrayalForObject(fisher, null);
-                        trails.setPortrayalForObject(fisher, null);
-                    }
+                    for (Fisher fisher : c.getRemoved())
+                        updateBus.post(fisher, () -> {
+                            boats.setPortrayalForObject(fisher, null);
+                            boats.removeSprite(fisher);
+                        });
                     if (c.wasAdded())
                         for (Fisher fisher : c.getAddedSubList())
-                            assignPortrayalToFisher(boatPortrayalFactory.build(fisher), fisher);
+                            updateBus.post(fisher, () -> assignPortrayalToFisher(fisher));
                 }
             }
         };
@@ -339,12 +405,8 @@ public class FishGUI extends GUIState {
                 enableDisableFisherListListener = new ListChangeListener<Fisher>() {
                     @Override
                     public void onChanged(Change<? extends Fisher> c) {
-                        SwingUtilities.invokeLater(new Runnable() {
-                            @Override
-                            public void run() {
-                                button.setEnabled(state.getFishers().size() != 0);
-                            }
-                        });
+                        final boolean anyLeft = state.getFishers().size() != 0;
+                        updateBus.post(button, () -> button.setEnabled(anyLeft));
                     }
                 };
                 state.getFishers().addListener(enableDisableFisherListListener);
@@ -415,8 +477,16 @@ public class FishGUI extends GUIState {
         scheduleRepeatingImmediatelyAfter(heatMap);
 
         displayFrame = setupDisplay2D(mainPortrayal, display2D, "Bathymetry", true);
+        // trails are drawn for the selected boats only, unless asked for all of them
+        final JCheckBox allTrails = new JCheckBox("All trails", trails.isAllTrails());
+        allTrails.addActionListener(e -> {
+            trails.setAllTrails(allTrails.isSelected());
+            display2D.repaint();
+        });
+        ((JComponent) display2D.getComponent(0)).add(allTrails);
         // attach it the portrayal
         display2D.attach(mainPortrayal, "Bathymetry");
+        display2D.attach(discretizationOutline, "Discretization Boundaries");
         // display2D.attach(mpaPortrayal,"MPAs");
         display2D.attach(heatMap.getHeatMapPortrayal(), "Fishing Hotspots");
         if (fadMapPortrayal != null) display2D.attach(fadMapPortrayal, "Fads");
@@ -427,15 +497,13 @@ public class FishGUI extends GUIState {
         displayFrame.setVisible(true);
     }
 
-    private void assignPortrayalToFisher(SimplePortrayal2D boatPortrayal, Fisher o) {
-        TrailedPortrayal2D trailed =
-                new TrailedPortrayal2D(this, boatPortrayal, trails, 50, Color.BLUE, new Color(0, 0, 255, 0));
-        trailed.setOnlyGrowTrailWhenSelected(true);
-        trailed.setOnlyShowTrailWhenSelected(false);
-        CircledPortrayal2D circled = new CircledPortrayal2D(trailed);
+    private void assignPortrayalToFisher(Fisher o) {
+        CircledPortrayal2D circled = new CircledPortrayal2D(boatPortrayalFactory.build(o));
         circled.setOnlyCircleWhenSelected(true);
         boats.setPortrayalForObject(o, circled);
-        trails.setPortrayalForObject(o, trailed);
+        // unselected boats are blitted straight from their sprite, or drawn as dots of their fleet color
+        boats.setSprite(o, boatPortrayalFactory.spriteFor(o));
+        boats.setFleetColor(o, boatPortrayalFactory.colorFor(o));
     }
 
     /**
@@ -466,12 +534,53 @@ public class FishGUI extends GUIState {
         return mainPortrayal;
     }
 
+    /**
+     * draws the boundaries of whichever discretization is being shown; empty until one is
+     */
+    public GroupOutlinePortrayal getDiscretizationOutline() {
+        return discretizationOutline;
+    }
+
+    /**
+     * where the model posts its GUI updates (see {@link GuiUpdateBus})
+     */
+    public GuiUpdateBus getUpdateBus() {
+        return updateBus;
+    }
+
+    /**
+     * where the GUI queues its changes to the model (see {@link ModelCommandQueue})
+     */
+    public ModelCommandQueue getCommands() {
+        return commands;
+    }
+
+    /**
+     * where inspectors read the model from (see {@link SnapshotPublisher})
+     */
+    public SnapshotPublisher getSnapshots() {
+        return snapshots;
+    }
+
+    public InspectorRefreshScheduler getInspectorRefresh() {
+        return inspectorRefresh;
+    }
+
+    /**
+     * the cache grids should share to avoid evaluating the same encoding twice
+     */
+    public LayerCache getLayerCache() {
+        return layerCache;
+    }
+
     public Display2D setupPortrayal(final ColorfulGrid portrayal) {
         FishState model = (FishState) state;
         portrayal.initializeGrid(model.getBiology(), model.getMap().getAllSeaTilesExcludingLandAsList());
 
         portrayal.setField(model.getRasterBathymetry().getGrid());
         portrayal.setMap(new TriColorMap(-6000, 0, 6000, Color.BLUE, Color.CYAN, Color.GREEN, new Color(0, 100, 0)));
+        portrayal.setCommands(commands);
+        followSteps(portrayal);
 
         // now deal with display2d
         // change width and height to keep correct geographical ratio
@@ -486,7 +595,19 @@ public class FishGUI extends GUIState {
             width = MIN_DIMENSION / heightToWidthRatio;
             height = MIN_DIMENSION;
         }
-        return new Display2D(width, height, this);
+        // repaints at a steady frame rate, however many steps that takes
+        return new FishDisplay2D(width, height, this);
+    }
+
+    /**
+     * let the portrayal know when the model moves on, so it re-evaluates its encodings at most once a step
+     */
+    private void followSteps(final ColorfulGrid portrayal) {
+        if (stepUpdates.containsKey(portrayal)) return;
+        stepUpdates.put(
+                portrayal,
+                scheduleRepeatingImmediatelyAfter(
+                        (Steppable) simState -> portrayal.updateStep(simState.schedule.getSteps())));
     }
 
     public JFrame setupDisplay2D(
@@ -500,10 +621,26 @@ public class FishGUI extends GUIState {
         display.repaint();
         // attach it the portrayal
         display.attach(portrayal, "Bathymetry");
+        portrayal.addRepaintListener(display::repaint);
 
         displayFrame = display.createFrame();
         controller.registerFrame(displayFrame);
         displayFrame.setTitle(title);
+        // closing the window lets go of the cached values only this display was using, and of the grid itself
+        displayFrame.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                final Stoppable updates = stepUpdates.remove(portrayal);
+                if (updates != null) updates.stop();
+                portrayal.release();
+            }
+
+            @Override
+            public void windowActivated(WindowEvent e) {
+                // MASON only hides closed windows: it may be shown again
+                followSteps(portrayal);
+            }
+        });
 
         return displayFrame;
     }
@@ -0,0 +1,108 @@
+/*
+ * POSEIDON, an agent-based model of fisheries
+ * Copyright (c) 2023, CoHESyS Lab, cohesys.lab@gmail.com.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.ox.poseidon.gui;
+
+import java.awt.*;
+
+/**
+ * The lookup-table version of MASON's SimpleColorMap: a linear gradient (alpha included) between two colors,
+ * clamped outside [min,max]. Like SimpleColorMap NaN is transparent, unless a color for non-finite levels is given.
+ * Moving the levels only rebuilds the table, no new map gets allocated.
+ */
+public class GradientColorMap extends LookupColorMap {
+
+    private double minLevel;
+    private double maxLevel;
+    private Color minColor;
+    private Color maxColor;
+    /**
+     * color of NaN and infinities; when null NaN is transparent and infinities are clamped like any other level
+     */
+    private final Color nonFiniteColor;
+
+    public GradientColorMap(double minLevel, double maxLevel, Color minColor, Color maxColor) {
+        this(minLevel, maxLevel, minColor, maxColor, null);
+    }
+
+    public GradientColorMap(double minLevel, double maxLevel, Color minColor, Color maxColor, Color nonFiniteColor) {
+        super(DEFAULT_RESOLUTION);
+        this.nonFiniteColor = nonFiniteColor;
+        setLevels(minLevel, maxLevel, minColor, maxColor);
+    }
+
+    public void setLevels(double minLevel, double maxLevel, Color minColor, Color maxColor) {
+        this.minLevel = minLevel;
+        this.maxLevel = maxLevel;
+        this.minColor = minColor;
+        this.maxColor = maxColor;
+        rebuild(minLevel, maxLevel);
+    }
+
+    /**
+     * move the levels, keeping the colors
+     */
+    public void setLevels(double minLevel, double maxLevel) {
+        setLevels(minLevel, maxLevel, minColor, maxColor);
+    }
+
+    @Override
+    protected int computeRGB(double level) {
+        if (!Double.isFinite(level) && nonFiniteColor != null) return nonFiniteColor.getRGB();
+        if (Double.isNaN(level)) return 0;
+        if (level <= minLevel) return minColor.getRGB();
+        if (level >= maxLevel) return maxColor.getRGB();
+
+        final double interpolation = (level - minLevel) / (maxLevel - minLevel);
+        final int alpha = interpolate(minColor.getAlpha(), maxColor.getAlpha(), interpolation);
+        final int red = interpolate(minColor.getRed(), maxColor.getRed(), interpolation);
+        final int green = interpolate(minColor.getGreen(), maxColor.getGreen(), interpolation);
+        final int blue = interpolate(minColor.getBlue(), maxColor.getBlue(), interpolation);
+        return (alpha << 24) | (red << 16) | (green << 8) | blue;
+    }
+
+    private static int interpolate(int from, int to, double interpolation) {
+        return (int) (interpolation * (to - from) + from);
+    }
+
+    @Override
+    public boolean validLevel(double level) {
+        return true;
+    }
+
+    @Override
+    public double defaultValue() {
+        return minLevel;
+    }
+
+    public double getMinLevel() {
+        return minLevel;
+    }
+
+    public double getMaxLevel() {
+        return maxLevel;
+    }
+
+    public Color getMinColor() {
+        return minColor;
+    }
+
+    public Color getMaxColor() {
+        return maxColor;
+    }
+}
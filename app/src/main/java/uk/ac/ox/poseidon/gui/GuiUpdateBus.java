@@ -0,0 +1,155 @@
+/*
+ * POSEIDON, an agent-based model of fisheries
+ * Copyright (c) 2023, CoHESyS Lab, cohesys.lab@gmail.com.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.ox.poseidon.gui;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.swing.*;
+
+/**
+ * Collects the GUI updates the model posts while it steps and runs them on the EDT at most once per frame. Updates
+ * are keyed by what they change (a label, a chart, a boat): an update posted while an older one with the same key is
+ * still pending replaces it, so however fast the model runs the EDT only ever sees the latest value.
+ */
+public class GuiUpdateBus {
+
+    /**
+     * about 60 flushes a second
+     */
+    public static final int DEFAULT_FRAME_MILLIS = 16;
+
+    private final Timer timer;
+
+    /**
+     * the latest update for each key, in the order the keys were first posted; guarded by this
+     */
+    private Map<Object, Runnable> pending = new LinkedHashMap<>();
+
+    private boolean running = false;
+
+    private final AtomicLong posted = new AtomicLong();
+
+    private final AtomicLong coalesced = new AtomicLong();
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final AtomicLong flushes = new AtomicLong();
+
+    public GuiUpdateBus() {
+        this(DEFAULT_FRAME_MILLIS);
+    }
+
+    public GuiUpdateBus(int frameMillis) {
+        timer = new Timer(frameMillis, e -> flush());
+        // if the EDT falls behind, skip ticks rather than queueing them
+        timer.setCoalesce(true);
+    }
+
+    /**
+     * queue an update; it runs on the EDT at the next flush unless a newer one with the same key replaces it first.
+     * Can be called from any thread. Updates posted while the bus is stopped are dropped
+     */
+    public void post(Object key, Runnable update) {
+        posted.incrementAndGet();
+        synchronized (this) {
+            if (!running) {
+                dropped.incrementAndGet();
+                return;
+            }
+            if (pending.put(key, update) != null) coalesced.incrementAndGet();
+        }
+    }
+
+    /**
+     * runs every pending update; called by the timer on the EDT
+     */
+    public void flush() {
+        assert SwingUtilities.isEventDispatchThread();
+        final Map<Object, Runnable> toRun;
+        synchronized (this) {
+            if (pending.isEmpty()) return;
+            toRun = pending;
+            pending = new LinkedHashMap<>();
+        }
+        flushes.incrementAndGet();
+        for (Runnable update : toRun.values()) {
+            try {
+                update.run();
+            } catch (Exception e) {
+                // one broken widget shouldn't stop the others from updating
+                e.printStackTrace();
+            }
+        }
+    }
+
+    public synchronized void start() {
+        running = true;
+        timer.start();
+    }
+
+    /**
+     * stops flushing; whatever is still pending is dropped
+     */
+    public synchronized void stop() {
+        running = false;
+        timer.stop();
+        dropped.addAndGet(pending.size());
+        pending.clear();
+    }
+
+    public synchronized boolean isRunning() {
+        return running;
+    }
+
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * @return how many updates were posted, including those later coalesced or dropped
+     */
+    public long getPosted() {
+        return posted.get();
+    }
+
+    /**
+     * @return how many updates were replaced by a newer one before they could run
+     */
+    public long getCoalesced() {
+        return coalesced.get();
+    }
+
+    /**
+     * @return how many updates were thrown away because the bus was stopped
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    public long getFlushes() {
+        return flushes.get();
+    }
+
+    @Override
+    public String toString() {
+        return "GuiUpdateBus{posted=" + getPosted() + ", coalesced=" + getCoalesced() + ", dropped=" + getDropped()
+                + ", flushes=" + getFlushes() + "}";
+    }
+}
@@ -21,9 +21,10 @@ package uk.ac.ox.poseidon.gui;
 import java.awt.*;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.function.Function;
 import javax.swing.*;
 import sim.display.Console;
 import sim.display.Controller;
@@ -43,6 +44,8 @@ import uk.ac.ox.poseidon.gui.drawing.ColorEncoding;
 import uk.ac.ox.poseidon.gui.drawing.ColorfulGrid;
 import uk.ac.ox.poseidon.gui.drawing.ColorfulGridSwitcher;
 import uk.ac.ox.poseidon.gui.drawing.CoordinateTransformer;
+import uk.ac.ox.poseidon.gui.drawing.DoubleEncoding;
+import uk.ac.ox.poseidon.gui.drawing.LayerCache;
 
 /**
  * Created by carrknight on 6/27/16.
@@ -64,6 +67,11 @@ public class HeatmapTester extends GUIState {
 
     private MouseListener heatmapClicker;
 
+    /**
+     * the heatmap is evaluated between steps, through here
+     */
+    private final ModelCommandQueue commands = new ModelCommandQueue(this);
+
     /**
      * create a random fishstate with seed = milliseconds since epoch
      */
@@ -79,8 +87,12 @@ public class HeatmapTester extends GUIState {
      */
     public HeatmapTester(FishState state) {
         super(state);
-        myPortrayal = new ColorfulGrid(guirandom);
-        copy = new ColorfulGrid(guirandom);
+        // both displays draw from the same cache, so the heatmap they share is evaluated once
+        LayerCache cache = new LayerCache();
+        myPortrayal = new ColorfulGrid(guirandom, cache);
+        copy = new ColorfulGrid(guirandom, cache);
+        myPortrayal.setCommands(commands);
+        copy.setCommands(commands);
     }
 
     public static void main(String[] args) {
@@ -127,6 +139,7 @@ public class HeatmapTester extends GUIState {
 
     private void initialize() {
         FishState state = (FishState) this.state;
+        commands.start();
 
         // the console label is a pain in the ass so we need to really use a wrecking ball to modify the way
         // the label is used
@@ -143,31 +156,19 @@ public class HeatmapTester extends GUIState {
         Display2D other = setupPortrayal(state, copy);
         setupDisplay2D(state, copy, other, "Mirror");
 
-        // add heatmapper
-        myPortrayal.addEnconding(
-                "Heatmap",
-                new ColorEncoding(
-                        DEFAULT_MAP,
-                        new Function<SeaTile, Double>() {
-                            @Override
-                            public Double apply(SeaTile tile) {
-                                return regression.predict(tile, state.getHoursSinceStart(), null, state);
-                            }
-                        },
-                        false));
-
-        // add heatmapper
-        copy.addEnconding(
-                "Heatmap",
-                new ColorEncoding(
-                        DEFAULT_MAP,
-                        new Function<SeaTile, Double>() {
-                            @Override
-                            public Double apply(SeaTile tile) {
-                                return regression.predict(tile, state.getHoursSinceStart(), null, state);
-                            }
-                        },
-                        false));
+        // add heatmapper, one encoding for both displays
+        ColorEncoding heatmap = new ColorEncoding(
+                DEFAULT_MAP,
+                new DoubleEncoding() {
+                    @Override
+                    public double encode(SeaTile tile) {
+                        return regression.predict(tile, state.getHoursSinceStart(), null, state);
+                    }
+                },
+                false,
+                true);
+        myPortrayal.addEnconding("Heatmap", heatmap);
+        copy.addEnconding("Heatmap", heatmap);
 
         transformer = new CoordinateTransformer(display2D, state.getMap());
         heatmapClicker = new MouseListener() {
@@ -190,6 +191,9 @@ public class HeatmapTester extends GUIState {
                         state.getFishers().get(0),
                         state);
 
+                // the regression has changed, so the cached heatmaps are stale
+                myPortrayal.invalidate();
+                copy.invalidate();
                 display2D.repaint();
             }
 
@@ -216,10 +220,17 @@ public class HeatmapTester extends GUIState {
         display.repaint();
         // attach it the portrayal
         display.attach(portrayal, "Bathymetry");
+        portrayal.addRepaintListener(display::repaint);
 
         displayFrame = display.createFrame();
         controller.registerFrame(displayFrame);
         displayFrame.setTitle(title);
+        displayFrame.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                portrayal.release();
+            }
+        });
         displayFrame.setVisible(true);
     }
 
@@ -228,6 +239,8 @@ public class HeatmapTester extends GUIState {
 
         portrayal.setField(state.getRasterBathymetry().getGrid());
         portrayal.setMap(new TriColorMap(-6000, 0, 6000, Color.BLUE, Color.CYAN, Color.GREEN, Color.RED));
+        scheduleRepeatingImmediatelyAfter(
+                (Steppable) simState -> portrayal.updateStep(simState.schedule.getSteps()));
 
         // now deal with display2d
         // change width and height to keep correct geographical ratio
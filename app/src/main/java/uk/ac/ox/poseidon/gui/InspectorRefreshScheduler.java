@@ -0,0 +1,173 @@
+/*
+ * POSEIDON, an agent-based model of fisheries
+ * Copyright (c) 2023, CoHESyS Lab, cohesys.lab@gmail.com.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.ox.poseidon.gui;
+
+import com.google.common.base.Preconditions;
+import java.awt.*;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+import javax.swing.*;
+
+/**
+ * Refreshes open inspectors on the EDT, a few at a time. Every frame it goes on from where the previous one stopped
+ * and refreshes inspectors until the frame's time budget is used up, so that many open inspectors update less often
+ * rather than stalling the GUI. Inspectors that can't be seen (in a hidden tab, a minimized or closed frame, scrolled
+ * out of view) are skipped, and told so, so that the model can stop copying their values too.
+ */
+public class InspectorRefreshScheduler {
+
+    /**
+     * what the scheduler refreshes; implemented by components
+     */
+    public interface Refreshable {
+
+        /**
+         * update what is shown; called on the EDT, only while showing
+         */
+        void refresh();
+
+        /**
+         * called when the component starts or stops being visible on screen
+         */
+        default void setShowing(boolean showing) {}
+    }
+
+    private final Timer timer;
+
+    private final long budgetNanos;
+
+    private final Predicate<Component> onScreen;
+
+    /**
+     * in registration order; held weakly so that closed inspectors are forgotten
+     */
+    private final List<WeakReference<Component>> registered = new ArrayList<>();
+
+    private final List<Boolean> wasShowing = new ArrayList<>();
+
+    /**
+     * where the next frame starts refreshing
+     */
+    private int next = 0;
+
+    private long refreshed = 0;
+
+    private long skippedHidden = 0;
+
+    private long deferred = 0;
+
+    public InspectorRefreshScheduler(double budgetMillis) {
+        this(budgetMillis, InspectorRefreshScheduler::isOnScreen);
+    }
+
+    InspectorRefreshScheduler(double budgetMillis, Predicate<Component> onScreen) {
+        Preconditions.checkArgument(budgetMillis > 0);
+        this.budgetNanos = (long) (budgetMillis * 1_000_000);
+        this.onScreen = onScreen;
+        timer = new Timer(GuiUpdateBus.DEFAULT_FRAME_MILLIS, e -> refreshSome());
+        timer.setCoalesce(true);
+    }
+
+    public synchronized <T extends Component & Refreshable> void register(T inspector) {
+        registered.add(new WeakReference<>(inspector));
+        wasShowing.add(Boolean.TRUE);
+    }
+
+    public void start() {
+        timer.start();
+    }
+
+    public void stop() {
+        timer.stop();
+    }
+
+    /**
+     * one frame's worth of refreshing; called by the timer on the EDT
+     */
+    public synchronized void refreshSome() {
+        final long start = System.nanoTime();
+        forgetCollected();
+        final int count = registered.size();
+        if (count == 0) return;
+        if (next >= count) next = 0;
+
+        int visited = 0;
+        for (; visited < count; visited++) {
+            if (visited > 0 && System.nanoTime() - start >= budgetNanos) break;
+            final int index = (next + visited) % count;
+            final Component component = registered.get(index).get();
+            if (component == null) continue;
+            final boolean showing = onScreen.test(component);
+            if (showing != wasShowing.get(index)) {
+                wasShowing.set(index, showing);
+                ((Refreshable) component).setShowing(showing);
+            }
+            if (showing) {
+                ((Refreshable) component).refresh();
+                refreshed++;
+            } else skippedHidden++;
+        }
+        deferred += count - visited;
+        next = (next + visited) % count;
+    }
+
+    private void forgetCollected() {
+        for (int i = registered.size() - 1; i >= 0; i--) {
+            if (registered.get(i).get() == null) {
+                registered.remove(i);
+                wasShowing.remove(i);
+                if (next > i) next--;
+            }
+        }
+    }
+
+    /**
+     * showing, in a window that isn't minimized, and at least partly within whatever viewport it's scrolled in
+     */
+    public static boolean isOnScreen(Component component) {
+        if (!component.isShowing()) return false;
+        final Window window = SwingUtilities.getWindowAncestor(component);
+        if (window instanceof Frame && (((Frame) window).getExtendedState() & Frame.ICONIFIED) != 0) return false;
+        return !(component instanceof JComponent) || !((JComponent) component).getVisibleRect().isEmpty();
+    }
+
+    public synchronized int getRegisteredCount() {
+        return registered.size();
+    }
+
+    public long getRefreshed() {
+        return refreshed;
+    }
+
+    /**
+     * @return how many times an inspector was passed over because it wasn't on screen
+     */
+    public long getSkippedHidden() {
+        return skippedHidden;
+    }
+
+    /**
+     * @return how many times an inspector was left for a later frame because the budget ran out
+     */
+    public long getDeferred() {
+        return deferred;
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * POSEIDON, an agent-based model of fisheries
+ * Copyright (c) 2023, CoHESyS Lab, cohesys.lab@gmail.com.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.ox.poseidon.gui;
+
+import com.google.common.base.Preconditions;
+import java.awt.*;
+
+/**
+ * A color map that precomputes the ARGB of a fixed number of levels evenly spaced over [min,max] and then answers
+ * getRGB with an array lookup. Subclasses only need to say which color an exact level has; NaN and the two
+ * infinities get a slot each, finite levels out of range are clamped.
+ * <p>
+ * Rebuilding the table (say because the max has moved) costs one computeRGB per slot, and the new table is
+ * swapped in as a whole so that whoever is painting never sees half of it.
+ */
+public abstract class LookupColorMap implements VersionedColorMap {
+
+    public static final int DEFAULT_RESOLUTION = 4096;
+
+    private final int resolution;
+
+    private volatile Lookup lookup;
+
+    /**
+     * goes up by one every rebuild
+     */
+    private volatile long version = 0;
+
+    protected LookupColorMap(int resolution) {
+        Preconditions.checkArgument(resolution >= 2, "need at least two levels to interpolate");
+        this.resolution = resolution;
+    }
+
+    /**
+     * the exact color of a level; called only while rebuilding the table
+     *
+     * @param level the level (may be NaN or infinite)
+     * @return its ARGB
+     */
+    protected abstract int computeRGB(double level);
+
+    /**
+     * recompute the table over a new range. Subclasses need to call this at the end of their constructor
+     *
+     * @param min the level of the first slot
+     * @param max the level of the last slot
+     */
+    protected void rebuild(double min, double max) {
+        final int[] table = new int[resolution];
+        final double step = max > min ? (max - min) / (resolution - 1) : 0;
+        for (int i = 0; i < resolution; i++) table[i] = computeRGB(min + i * step);
+        lookup = new Lookup(
+                min,
+                max,
+                table,
+                computeRGB(Double.NaN),
+                computeRGB(Double.NEGATIVE_INFINITY),
+                computeRGB(Double.POSITIVE_INFINITY));
+        version++;
+    }
+
+    @Override
+    public int getRGB(double level) {
+        return lookup.rgb(level);
+    }
+
+    @Override
+    public Color getColor(double level) {
+        return new Color(getRGB(level), true);
+    }
+
+    @Override
+    public int getAlpha(double level) {
+        return getRGB(level) >>> 24;
+    }
+
+    @Override
+    public long getVersion() {
+        return version;
+    }
+
+    public int getResolution() {
+        return resolution;
+    }
+
+    private static final class Lookup {
+
+        private final double min;
+        private final double max;
+        private final double scale;
+        private final int[] table;
+        private final int nanRGB;
+        private final int negativeInfinityRGB;
+        private final int positiveInfinityRGB;
+
+        private Lookup(
+                double min, double max, int[] table, int nanRGB, int negativeInfinityRGB, int positiveInfinityRGB) {
+            this.min = min;
+            this.max = max;
+            this.scale = max > min ? (table.length - 1) / (max - min) : 0;
+            this.table = table;
+            this.nanRGB = nanRGB;
+            this.negativeInfinityRGB = negativeInfinityRGB;
+            this.positiveInfinityRGB = positiveInfinityRGB;
+        }
+
+        private int rgb(double level) {
+            if (Double.isNaN(level)) return nanRGB;
+            if (level <= min) return level == Double.NEGATIVE_INFINITY ? negativeInfinityRGB : table[0];
+            if (level >= max) return level == Double.POSITIVE_INFINITY ? positiveInfinityRGB : table[table.length - 1];
+            return table[(int) ((level - min) * scale + 0.5)];
+        }
+    }
+}
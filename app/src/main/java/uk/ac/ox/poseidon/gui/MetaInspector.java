@@ -18,7 +18,17 @@
 
 package uk.ac.ox.poseidon.gui;
 
+import java.awt.*;
+import java.awt.event.ContainerAdapter;
+import java.awt.event.ContainerEvent;
+import java.awt.event.ContainerListener;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
 import javax.swing.*;
+import javax.swing.text.JTextComponent;
 import org.metawidget.inspector.composite.CompositeInspector;
 import org.metawidget.inspector.composite.CompositeInspectorConfig;
 import org.metawidget.inspector.propertytype.PropertyTypeInspector;
@@ -38,21 +48,77 @@ import uk.ac.ox.poseidon.gui.widget.*;
  * Created by carrknight on 6/7/15.
  */
 @SuppressWarnings("unchecked")
-public class MetaInspector extends Inspector {
+public class MetaInspector extends Inspector implements InspectorRefreshScheduler.Refreshable {
 
     private static final long serialVersionUID = 1L;
     private final Object toInspect;
 
     private final SwingMetawidget widget = new SwingMetawidget();
 
+    private final FishGUI gui;
+
+    /**
+     * where the model publishes what this inspector shows; null without a gui, in which case the model is read
+     * directly
+     */
+    private final SnapshotPublisher.Source source;
+
+    /**
+     * the widgets showing a value, in the order of the paths the source copies
+     */
+    private List<JComponent> valueWidgets = new ArrayList<>();
+
+    /**
+     * the value last shown by each of the value widgets, so that only the ones that changed are touched
+     */
+    private Object[] shown = new Object[0];
+
+    /**
+     * the snapshot last shown
+     */
+    private PropertySnapshot shownSnapshot = null;
+
+    /**
+     * the classes of the objects the value widgets were built for, as of the first snapshot after they were found;
+     * null until then
+     */
+    private Class<?>[] builtFor = null;
+
+    /**
+     * the value widgets whose property couldn't be read, already reported
+     */
+    private boolean[] unreadable = new boolean[0];
+
+    /**
+     * set whenever metawidget rebuilds (part of) the widget tree, at which point the value widgets are looked for
+     * again
+     */
+    private boolean rebuilt = true;
+
+    private final ContainerListener rebuildListener = new ContainerAdapter() {
+        @Override
+        public void componentAdded(ContainerEvent e) {
+            rebuilt = true;
+        }
+
+        @Override
+        public void componentRemoved(ContainerEvent e) {
+            rebuilt = true;
+        }
+    };
+
     public MetaInspector(Object toInspect, FishGUI gui) {
         this.toInspect = toInspect;
+        this.gui = gui;
+        this.source = gui == null ? null : gui.getSnapshots().register(toInspect);
+        if (gui != null) gui.getInspectorRefresh().register(this);
 
         STANDARD_WIDGET_SETUP(widget, gui);
 
         setVolatile(true); // volatile by default
 
         widget.setToInspect(toInspect);
+        widget.addContainerListener(rebuildListener);
         // widget.getWidgetProcessor( BeanUtilsBindingProcessor.class ).rebind(widget.getToInspect(), widget);
         this.add(widget);
     }
@@ -127,8 +193,158 @@ public class MetaInspector extends Inspector {
         widget.addWidgetProcessor(new ArrayWidgetProcessor());
     }
 
+    /**
+     * without a gui, re-reads the model; otherwise the gui's {@link InspectorRefreshScheduler} refreshes the
+     * inspector when it gets to it, as long as it is on screen, and {@link #refresh()} rebuilds it when a nested
+     * object changes class
+     */
     @Override
     public void updateInspector() {
-        widget.setToInspect(toInspect);
+        if (source == null) widget.setToInspect(toInspect);
+    }
+
+    /**
+     * shows the values of the latest snapshot in the widgets already built, without touching the model. Only the
+     * widgets whose value changed since the last refresh are updated
+     */
+    @Override
+    public void refresh() {
+        if (rebuilt) {
+            // a strategy changed, say: find the new widgets
+            rebuilt = false;
+            final List<List<String>> paths = new ArrayList<>();
+            final List<JComponent> widgets = new ArrayList<>();
+            findValueWidgets(widget, Collections.emptyList(), paths, widgets);
+            valueWidgets = widgets;
+            shown = new Object[widgets.size()];
+            Arrays.fill(shown, PropertySnapshot.UNREADABLE);
+            shownSnapshot = null;
+            builtFor = null;
+            unreadable = new boolean[widgets.size()];
+            final boolean[] asText = new boolean[widgets.size()];
+            for (int i = 0; i < asText.length; i++) asText[i] = showsText(widgets.get(i));
+            if (!source.isCopying(paths, asText)) source.setPaths(paths, asText);
+        }
+
+        final PropertySnapshot snapshot = source.getLatest();
+        if (snapshot == null || snapshot == shownSnapshot || snapshot.size() != shown.length) return;
+        shownSnapshot = snapshot;
+        if (builtFor == null) {
+            builtFor = new Class<?>[shown.length];
+            for (int i = 0; i < shown.length; i++) builtFor[i] = snapshot.getHolder(i);
+        }
+        for (int i = 0; i < shown.length; i++) {
+            if (snapshot.getHolder(i) != builtFor[i]) {
+                // the model swapped a nested object (a strategy, say) for another kind, or for null: these
+                // widgets are for properties it doesn't have
+                rebuildFromModel();
+                return;
+            }
+        }
+        for (int i = 0; i < shown.length; i++) {
+            final Object value = snapshot.get(i);
+            if (value == PropertySnapshot.UNREADABLE) {
+                if (!unreadable[i])
+                    System.err.println("inspector can't read " + String.join(".", snapshot.getPaths().get(i))
+                            + " of " + toInspect + ", showing its last value");
+                unreadable[i] = true;
+                continue;
+            }
+            unreadable[i] = false;
+            if (Objects.equals(value, shown[i])) continue;
+            shown[i] = value;
+            show(valueWidgets.get(i), value);
+        }
+    }
+
+    /**
+     * has metawidget look at the model again and build the widgets anew. It reads the model, so it does so between
+     * two steps; the model thread never waits for the EDT while stepping
+     */
+    private void rebuildFromModel() {
+        synchronized (gui.state.schedule) {
+            widget.setToInspect(toInspect);
+            // metawidget builds lazily: make it build now, while the model holds still
+            widget.getComponentCount();
+        }
+        rebuilt = true;
+    }
+
+    /**
+     * off screen there is no point in the model copying our values
+     */
+    @Override
+    public void setShowing(boolean showing) {
+        source.setShowing(showing);
+    }
+
+    /**
+     * collects the widgets metawidget built for a property (it names them after it), descending into nested
+     * metawidgets and the panels layouts put them in
+     */
+    private void findValueWidgets(
+            Container container, List<String> path, List<List<String>> paths, List<JComponent> widgets) {
+        for (Component child : container.getComponents()) {
+            final String name = child.getName();
+            if (child instanceof SwingMetawidget) {
+                if (name == null) continue;
+                final SwingMetawidget nestedWidget = (SwingMetawidget) child;
+                if (!Arrays.asList(nestedWidget.getContainerListeners()).contains(rebuildListener))
+                    nestedWidget.addContainerListener(rebuildListener);
+                final List<String> nested = new ArrayList<>(path);
+                nested.add(name);
+                findValueWidgets(nestedWidget, nested, paths, widgets);
+            } else if (name != null && isValueWidget(child)) {
+                final List<String> property = new ArrayList<>(path);
+                property.add(name);
+                paths.add(property);
+                widgets.add((JComponent) child);
+            } else if (child instanceof JPanel || child instanceof Box)
+                findValueWidgets((Container) child, path, paths, widgets);
+        }
+    }
+
+    private static boolean isValueWidget(Component component) {
+        return component instanceof JLabel
+                || component instanceof JCheckBox
+                || component instanceof JSpinner
+                || component instanceof JComboBox
+                || component instanceof JTextComponent;
+    }
+
+    /**
+     * labels and text fields can show any value as its text; the other widgets need the value itself
+     */
+    private static boolean showsText(Component component) {
+        return component instanceof JLabel || component instanceof JTextComponent;
+    }
+
+    /**
+     * sets the widget to the value, flagged so that the binders don't write it straight back to the model
+     */
+    private static void show(JComponent widget, Object value) {
+        widget.putClientProperty(ImmediateBinder.REFRESHING, Boolean.TRUE);
+        try {
+            if (widget instanceof JLabel) {
+                final String text = value == null ? "" : value.toString();
+                if (!text.equals(((JLabel) widget).getText())) ((JLabel) widget).setText(text);
+            } else if (widget instanceof JCheckBox) {
+                if (value instanceof Boolean) ((JCheckBox) widget).setSelected((Boolean) value);
+            } else if (widget instanceof JSpinner) {
+                if (value != null && !value.equals(((JSpinner) widget).getValue())) ((JSpinner) widget).setValue(value);
+            } else if (widget instanceof JComboBox) {
+                if (!Objects.equals(value, ((JComboBox<?>) widget).getSelectedItem()))
+                    ((JComboBox<?>) widget).setSelectedItem(value);
+            } else if (widget instanceof JTextComponent) {
+                // never overwrite what the user is typing
+                final String text = value == null ? "" : value.toString();
+                if (!widget.isFocusOwner() && !text.equals(((JTextComponent) widget).getText()))
+                    ((JTextComponent) widget).setText(text);
+            }
+        } catch (IllegalArgumentException e) {
+            // the spinner model refused the value (out of its bounds, say): leave it as it was
+        } finally {
+            widget.putClientProperty(ImmediateBinder.REFRESHING, null);
+        }
     }
 }
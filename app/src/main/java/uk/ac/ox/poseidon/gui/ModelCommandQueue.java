@@ -0,0 +1,174 @@
+/*
+ * POSEIDON, an agent-based model of fisheries
+ * Copyright (c) 2023, CoHESyS Lab, cohesys.lab@gmail.com.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.ox.poseidon.gui;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import javax.swing.*;
+import sim.display.GUIState;
+import sim.engine.SimState;
+import sim.engine.Steppable;
+import sim.engine.Stoppable;
+import uk.ac.ox.oxfish.model.FishState;
+
+/**
+ * The way the GUI changes the model without ever waiting on the schedule lock itself. Commands are queued and run
+ * between steps: by the model thread just before each step, or, when the model is not stepping, by a helper thread
+ * that takes the schedule lock. Either way the GUI gets back a future that completes on the EDT, so whatever is
+ * chained to it can touch Swing directly.
+ */
+public class ModelCommandQueue {
+
+    private final GUIState gui;
+
+    private final ConcurrentLinkedQueue<Command<?>> queue = new ConcurrentLinkedQueue<>();
+
+    /**
+     * drains the queue while the model is paused or stopped; blocks (off the EDT) while a step is in progress.
+     * Exists only between {@link #start()} and {@link #stop()}
+     */
+    private volatile ExecutorService idleDrainer;
+
+    private Stoppable beforeEachStep;
+
+    public ModelCommandQueue(GUIState gui) {
+        this.gui = gui;
+    }
+
+    /**
+     * start draining the queue before every step. Call again after each (re)start of the GUI state, since MASON
+     * forgets what was scheduled before the steps
+     */
+    public synchronized void start() {
+        if (beforeEachStep != null) beforeEachStep.stop();
+        beforeEachStep = gui.scheduleRepeatingImmediatelyBefore((Steppable) simState -> drain());
+        if (idleDrainer == null) {
+            idleDrainer = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "model-commands");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        // whatever was queued before starting
+        if (!queue.isEmpty()) idleDrainer.execute(this::drainBetweenSteps);
+    }
+
+    /**
+     * stops draining; commands still queued fail with a {@link CancellationException}
+     */
+    public synchronized void stop() {
+        if (beforeEachStep != null) beforeEachStep.stop();
+        beforeEachStep = null;
+        if (idleDrainer != null) idleDrainer.shutdownNow();
+        idleDrainer = null;
+        Command<?> command;
+        while ((command = queue.poll()) != null) command.cancel();
+    }
+
+    /**
+     * queue a command that computes something from the model. Commands queued before {@link #start()} wait for it
+     *
+     * @return completes, on the EDT, with what the command returned or with the exception it threw
+     */
+    public <T> CompletableFuture<T> call(Function<FishState, T> command) {
+        final Command<T> queued = new Command<>(command);
+        queue.add(queued);
+        final ExecutorService drainer = idleDrainer;
+        if (drainer != null) {
+            try {
+                drainer.execute(this::drainBetweenSteps);
+            } catch (RejectedExecutionException e) {
+                // stopped meanwhile: it waits for the next start, like anything queued before it
+            }
+        }
+        return queued.future;
+    }
+
+    /**
+     * queue a command that only changes the model
+     *
+     * @return completes on the EDT once the command has run
+     */
+    public CompletableFuture<Void> run(Consumer<FishState> command) {
+        return call(state -> {
+            command.accept(state);
+            return null;
+        });
+    }
+
+    /**
+     * takes the schedule lock, which the model only lets go of between steps, and drains the queue; usually the
+     * model thread has drained it already
+     */
+    private void drainBetweenSteps() {
+        final SimState state = gui.state;
+        if (state == null) return;
+        synchronized (state.schedule) {
+            drain();
+        }
+    }
+
+    /**
+     * runs every queued command; must be called while holding the schedule lock (the model thread does, during
+     * steps)
+     */
+    private void drain() {
+        Command<?> command;
+        while ((command = queue.poll()) != null) command.execute((FishState) gui.state);
+    }
+
+    /**
+     * @return how many commands are waiting for the next step boundary
+     */
+    public int getPendingCount() {
+        return queue.size();
+    }
+
+    private static class Command<T> {
+
+        private final Function<FishState, T> function;
+
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+
+        private Command(Function<FishState, T> function) {
+            this.function = function;
+        }
+
+        private void execute(FishState state) {
+            try {
+                final T result = function.apply(state);
+                SwingUtilities.invokeLater(() -> future.complete(result));
+            } catch (Throwable e) {
+                // errors too: the commands behind this one still have to run and complete
+                e.printStackTrace();
+                SwingUtilities.invokeLater(() -> future.completeExceptionally(e));
+            }
+        }
+
+        private void cancel() {
+            SwingUtilities.invokeLater(() -> future.completeExceptionally(new CancellationException()));
+        }
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * POSEIDON, an agent-based model of fisheries
+ * Copyright (c) 2023, CoHESyS Lab, cohesys.lab@gmail.com.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.ox.poseidon.gui;
+
+import com.google.common.base.Preconditions;
+import java.util.Arrays;
+
+/**
+ * Average of each cell's trawls over the last few days. Each cell keeps its days in a ring of ints (all the rings
+ * in one array) next to their running sum. A cell is only brought up to date when it is trawled or when one of its
+ * trawls leaves the window, so days with no fishing cost nothing. Until the window is full the average is over
+ * the days observed so far, counting a first day with no trawls at all.
+ */
+public class MovingAverageTrawlSmoother implements TrawlSmoother {
+
+    private final int height;
+
+    private final int window;
+
+    /**
+     * cell-major: the trawls of cell c on day d are at c * window + d % window
+     */
+    private final int[] ring;
+
+    /**
+     * the sum of the trawls in the window, per cell (x * height + y)
+     */
+    private final int[] sums;
+
+    /**
+     * the last day each cell was brought up to date
+     */
+    private final int[] lastDay;
+
+    /**
+     * for each slot of the ring, the cells with trawls in it: they need updating when the slot is next reused
+     */
+    private final int[][] expiring;
+
+    private final int[] expiringSize;
+
+    /**
+     * cells whose sum isn't 0
+     */
+    private final ActiveCells active;
+
+    private int day = 0;
+
+    /**
+     * number of days in the window, up to its size
+     */
+    private int days;
+
+    private int maxSum = 0;
+
+    private int maxCell = -1;
+
+    public MovingAverageTrawlSmoother(int width, int height, int window) {
+        Preconditions.checkArgument(window > 0, "the moving average needs a window of at least one day");
+        this.height = height;
+        this.window = window;
+        final int cells = width * height;
+        this.ring = new int[Math.multiplyExact(cells, window)];
+        this.sums = new int[cells];
+        this.lastDay = new int[cells];
+        this.expiring = new int[window][16];
+        this.expiringSize = new int[window];
+        this.active = new ActiveCells(cells);
+        // start with a day of no trawls, like the averages always did
+        days = 1;
+    }
+
+    @Override
+    public double step(TrawlEvents today, double[][] smoothed) {
+        day++;
+        final boolean growing = days < window;
+        if (growing) days++;
+        final int slot = day % window;
+        boolean maxDropped = false;
+
+        // the trawls of the day leaving the window
+        final int[] leaving = expiring[slot];
+        for (int i = 0; i < expiringSize[slot]; i++) maxDropped |= update(leaving[i], 0, smoothed, growing);
+        expiringSize[slot] = 0;
+
+        for (int i = 0; i < today.size(); i++)
+            maxDropped |= update(today.getX(i) * height + today.getY(i), today.getCount(i), smoothed, growing);
+
+        // while the window fills up every average changes, not just the ones touched
+        if (growing) {
+            for (int i = 0; i < active.size(); i++) {
+                final int cell = active.get(i);
+                smoothed[cell / height][cell % height] = sums[cell] / (double) days;
+            }
+        }
+        if (maxDropped) {
+            maxSum = 0;
+            maxCell = -1;
+            for (int i = 0; i < active.size(); i++) {
+                final int cell = active.get(i);
+                if (sums[cell] > maxSum) {
+                    maxSum = sums[cell];
+                    maxCell = cell;
+                }
+            }
+        }
+        return maxSum / (double) days;
+    }
+
+    /**
+     * evict from the cell's window the days it missed, then add today's trawls
+     *
+     * @return true if this was the cell with the highest sum and its sum went down
+     */
+    private boolean update(int cell, int trawls, double[][] smoothed, boolean growing) {
+        final int base = cell * window;
+        final int previousSum = sums[cell];
+        int sum = previousSum;
+        if (lastDay[cell] != day) {
+            if (day - lastDay[cell] >= window) {
+                if (sum != 0) Arrays.fill(ring, base, base + window, 0);
+                sum = 0;
+            } else {
+                for (int missed = lastDay[cell] + 1; missed <= day; missed++) {
+                    sum -= ring[base + missed % window];
+                    ring[base + missed % window] = 0;
+                }
+            }
+            lastDay[cell] = day;
+        }
+        if (trawls > 0) {
+            final int slot = day % window;
+            if (ring[base + slot] == 0) expire(cell, slot);
+            ring[base + slot] += trawls;
+            sum += trawls;
+        }
+        sums[cell] = sum;
+
+        if (sum > 0) active.add(cell);
+        else active.remove(cell);
+        // when the window is growing all active cells are rewritten anyway
+        if (!growing || sum == 0) smoothed[cell / height][cell % height] = sum / (double) days;
+        if (sum > maxSum) {
+            maxSum = sum;
+            maxCell = cell;
+        }
+        return cell == maxCell && sum < previousSum;
+    }
+
+    private void expire(int cell, int slot) {
+        if (expiringSize[slot] == expiring[slot].length)
+            expiring[slot] = Arrays.copyOf(expiring[slot], expiringSize[slot] * 2);
+        expiring[slot][expiringSize[slot]++] = cell;
+    }
+
+    public int getWindow() {
+        return window;
+    }
+}
@@ -0,0 +1,307 @@
+/*
+ * POSEIDON, an agent-based model of fisheries
+ * Copyright (c) 2023, CoHESyS Lab, cohesys.lab@gmail.com.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.ox.poseidon.gui;
+
+import com.google.common.base.Preconditions;
+import java.awt.*;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import javax.imageio.ImageIO;
+import javax.swing.*;
+import sim.engine.Steppable;
+import sim.engine.Stoppable;
+import sim.portrayal.DrawInfo2D;
+import sim.portrayal.FieldPortrayal2D;
+import sim.portrayal.geo.GeomPortrayal;
+import sim.portrayal.geo.GeomVectorFieldPortrayal;
+import sim.portrayal.simple.ImagePortrayal2D;
+import uk.ac.ox.oxfish.fisher.Fisher;
+import uk.ac.ox.oxfish.model.FishState;
+import uk.ac.ox.oxfish.model.StepOrder;
+import uk.ac.ox.oxfish.model.Startable;
+import uk.ac.ox.oxfish.utility.fxcollections.ListChangeListener;
+import uk.ac.ox.poseidon.gui.drawing.*;
+
+/**
+ * Draws the same layers as the FishGUI main display (map encoding, fishing hotspots, FADs, trails, boats and ports)
+ * into images without any window, and writes them as numbered PNGs every so many days. Register it with the model
+ * of a batch or experiment run ({@code state.registerStartable(renderer)}) and it starts and stops with it.
+ * <p>
+ * Frames are drawn on the model thread but compressed and written by a few worker threads; the model only waits
+ * when all the frame buffers are still being written.
+ */
+public class OffscreenRenderer implements Startable {
+
+    private static final long serialVersionUID = 2912470583342093167L;
+
+    /**
+     * kept as a string: paths can't be serialized along with the model
+     */
+    private final String directory;
+
+    private final int width;
+
+    private final int height;
+
+    private final int everyXDays;
+
+    private String encoding = "Depth";
+
+    /**
+     * outlines of the MPAs on top of the map; off by default since the depth encoding already shows them
+     */
+    private boolean drawingMpas = false;
+
+    private int encoders = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+
+    private transient ColorfulGrid map;
+    private transient TrawlingHeatMap heatMap;
+    private transient FadLayerPortrayal fads;
+    private transient BoatTrailsPortrayal trails;
+    private transient BoatLayerPortrayal boats;
+    private transient IndexedSparseGridPortrayal2D ports;
+    private transient GeomVectorFieldPortrayal mpas;
+    private transient BoatPortrayalFactory boatPortrayalFactory;
+    private transient ListChangeListener<Fisher> fisherListListener;
+
+    private transient FishState model;
+    private transient Stoppable[] stoppables;
+    private transient ExecutorService writers;
+
+    /**
+     * frames not being written, so that at most this many are in memory at any time
+     */
+    private transient BlockingQueue<BufferedImage> freeFrames;
+
+    private int frame = 0;
+
+    /**
+     * @param directory  where the frames go (created if needed)
+     * @param width      width of each frame in pixels
+     * @param height     height of each frame in pixels
+     * @param everyXDays how many days of model time between frames
+     */
+    public OffscreenRenderer(Path directory, int width, int height, int everyXDays) {
+        Preconditions.checkArgument(width > 0 && height > 0, "Frames need to be at least one pixel");
+        Preconditions.checkArgument(everyXDays > 0, "Frames need to be at least one day apart");
+        this.directory = directory.toString();
+        this.width = width;
+        this.height = height;
+        this.everyXDays = everyXDays;
+    }
+
+    /**
+     * builds the layers and starts drawing
+     */
+    @Override
+    public void start(FishState model) {
+        this.model = model;
+        try {
+            Files.createDirectories(Paths.get(directory));
+            boatPortrayalFactory = new BoatPortrayalFactory(null);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        map = new ColorfulGrid(model.getRandom());
+        map.initializeGrid(model.getBiology(), model.getMap().getAllSeaTilesExcludingLandAsList());
+        map.setField(model.getRasterBathymetry().getGrid());
+        map.setSelectedEncoding(encoding);
+        map.setSynchronous(true);
+
+        heatMap = new TrawlingHeatMap(model.getDailyTrawlsMap(), model, 30);
+
+        FadIndex fadIndex = null;
+        if (model.getFadMap() != null) {
+            fadIndex = new FadIndex(model.getFadMap().getField(), 1);
+            fads = new FadLayerPortrayal(fadIndex, Color.yellow, 0.5);
+        }
+
+        BoatTrails boatTrails = new BoatTrails(
+                model.getFisherGrid().getWidth(), model.getFisherGrid().getHeight(), FishGUI.TRAIL_LENGTH);
+        trails = new BoatTrailsPortrayal();
+        trails.setField(boatTrails);
+        trails.setColor(Color.BLUE);
+        // nothing is ever selected here
+        trails.setAllTrails(true);
+
+        boats = new BoatLayerPortrayal();
+        boats.setField(model.getFisherGrid());
+        for (Fisher fisher : model.getFishers()) assignSprite(fisher);
+        fisherListListener = new ListChangeListener<Fisher>() {
+            @Override
+            public void onChanged(Change<? extends Fisher> c) {
+                while (c.next()) {
+                    for (Fisher fisher : c.getRemoved()) boats.removeSprite(fisher);
+                    if (c.wasAdded()) for (Fisher fisher : c.getAddedSubList()) assignSprite(fisher);
+                }
+            }
+        };
+        model.getFishers().addListener(fisherListListener);
+
+        ports = new IndexedSparseGridPortrayal2D();
+        ports.setField(model.getPortGrid());
+        ports.setPortrayalForAll(new ImagePortrayal2D(
+                new ImageIcon(FishGUI.IMAGES_PATH.resolve("anchor.png").toString())));
+
+        mpas = new GeomVectorFieldPortrayal(false);
+        mpas.setField(model.getMpaVectorField());
+        mpas.setPortrayalForAll(new GeomPortrayal(Color.BLUE, false));
+
+        writers = Executors.newFixedThreadPool(encoders, runnable -> {
+            final Thread thread = new Thread(runnable, "offscreen-frame-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        freeFrames = new ArrayBlockingQueue<>(encoders + 1);
+        for (int i = 0; i < encoders + 1; i++)
+            freeFrames.add(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB));
+
+        // the layers that follow the model keep up every step, frames are only drawn every few days
+        final Steppable layers = (Steppable) simState -> map.updateStep(simState.schedule.getSteps());
+        stoppables = new Stoppable[] {
+            model.scheduleEveryStep(layers, StepOrder.AFTER_DATA),
+            model.scheduleEveryStep(heatMap, StepOrder.AFTER_DATA),
+            model.scheduleEveryStep(boatTrails, StepOrder.AFTER_DATA),
+            fadIndex == null ? null : model.scheduleEveryStep(fadIndex, StepOrder.AFTER_DATA),
+            model.scheduleEveryXDay((Steppable) simState -> renderFrame(), StepOrder.AFTER_DATA, everyXDays)
+        };
+    }
+
+    private void assignSprite(Fisher fisher) {
+        boats.setSprite(fisher, boatPortrayalFactory.spriteFor(fisher));
+        boats.setFleetColor(fisher, boatPortrayalFactory.colorFor(fisher));
+    }
+
+    /**
+     * draws all the layers, back to front, onto the image
+     */
+    public void render(BufferedImage image) {
+        final Graphics2D graphics = image.createGraphics();
+        graphics.setColor(Color.WHITE);
+        graphics.fillRect(0, 0, image.getWidth(), image.getHeight());
+        drawLayer(map, graphics, image);
+        if (drawingMpas) drawLayer(mpas, graphics, image);
+        drawLayer(heatMap.getHeatMapPortrayal(), graphics, image);
+        if (fads != null) drawLayer(fads, graphics, image);
+        drawLayer(trails, graphics, image);
+        drawLayer(boats, graphics, image);
+        drawLayer(ports, graphics, image);
+        graphics.dispose();
+    }
+
+    private static void drawLayer(FieldPortrayal2D layer, Graphics2D graphics, BufferedImage image) {
+        final Rectangle2D.Double area = new Rectangle2D.Double(0, 0, image.getWidth(), image.getHeight());
+        final DrawInfo2D info = new DrawInfo2D(null, layer, area, area);
+        layer.draw(layer.getField(), graphics, info);
+    }
+
+    /**
+     * draws a frame and hands it over to be written
+     */
+    private void renderFrame() {
+        final BufferedImage image;
+        try {
+            image = freeFrames.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        render(image);
+        final Path file = Paths.get(directory, String.format("frame_%06d.png", frame++));
+        writers.execute(() -> {
+            try {
+                ImageIO.write(image, "png", file.toFile());
+            } catch (IOException e) {
+                e.printStackTrace();
+                System.err.println("failed to write frame " + file);
+            } finally {
+                freeFrames.add(image);
+            }
+        });
+    }
+
+    /**
+     * stops drawing and waits for the frames still being written
+     */
+    @Override
+    public void turnOff() {
+        if (stoppables != null) for (Stoppable stoppable : stoppables) if (stoppable != null) stoppable.stop();
+        stoppables = null;
+        if (fisherListListener != null) model.getFishers().removeListener(fisherListListener);
+        fisherListListener = null;
+        if (writers != null) {
+            writers.shutdown();
+            try {
+                writers.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            writers = null;
+        }
+    }
+
+    public String getEncoding() {
+        return encoding;
+    }
+
+    /**
+     * @param encoding the name of the ColorfulGrid encoding drawn as background (Depth, Habitat or a species)
+     */
+    public void setEncoding(String encoding) {
+        this.encoding = encoding;
+        if (map != null) map.setSelectedEncoding(encoding);
+    }
+
+    public boolean isDrawingMpas() {
+        return drawingMpas;
+    }
+
+    public void setDrawingMpas(boolean drawingMpas) {
+        this.drawingMpas = drawingMpas;
+    }
+
+    public int getEncoders() {
+        return encoders;
+    }
+
+    /**
+     * @param encoders how many threads compress and write frames; only read when the model starts
+     */
+    public void setEncoders(int encoders) {
+        Preconditions.checkArgument(encoders > 0);
+        this.encoders = encoders;
+    }
+
+    /**
+     * @return how many frames have been drawn so far
+     */
+    public int getFrame() {
+        return frame;
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * POSEIDON, an agent-based model of fisheries
+ * Copyright (c) 2023, CoHESyS Lab, cohesys.lab@gmail.com.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.ox.poseidon.gui;
+
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reads bean properties through method handles looked up once per class, rather than going through BeanUtils'
+ * reflection and string parsing every time. Nested paths are resolved one name at a time against the runtime class
+ * of each object, so they keep working when a strategy is swapped for one of a different class.
+ */
+public class PropertyGetters {
+
+    private static final MethodType GETTER = MethodType.methodType(Object.class, Object.class);
+
+    /**
+     * the getters of every class asked about so far, by property name
+     */
+    private static final Map<Class<?>, Map<String, MethodHandle>> CACHE = new ConcurrentHashMap<>();
+
+    private PropertyGetters() {}
+
+    /**
+     * @return the value at the end of the path
+     * @throws NoSuchMethodException if some name on the path is not a readable property
+     * @throws NullPointerException  if an object along the path is null
+     */
+    public static Object read(Object bean, List<String> path) throws Throwable {
+        Object current = bean;
+        for (String name : path) {
+            final MethodHandle getter = gettersOf(current.getClass()).get(name);
+            if (getter == null) throw new NoSuchMethodException(current.getClass().getName() + "." + name);
+            current = getter.invokeExact(current);
+        }
+        return current;
+    }
+
+    public static Map<String, MethodHandle> gettersOf(Class<?> type) {
+        return CACHE.computeIfAbsent(type, PropertyGetters::lookUp);
+    }
+
+    private static Map<String, MethodHandle> lookUp(Class<?> type) {
+        final Map<String, MethodHandle> getters = new HashMap<>();
+        try {
+            for (PropertyDescriptor property : Introspector.getBeanInfo(type).getPropertyDescriptors()) {
+                final Method read = property.getReadMethod();
+                if (read == null) continue;
+                try {
+                    // public getters of non-public classes can only be called this way
+                    read.setAccessible(true);
+                    getters.put(property.getName(), MethodHandles.lookup().unreflect(read).asType(GETTER));
+                } catch (IllegalAccessException | SecurityException e) {
+                    // unreadable: left out
+                }
+            }
+        } catch (IntrospectionException e) {
+            e.printStackTrace();
+        }
+        return Collections.unmodifiableMap(getters);
+    }
+}
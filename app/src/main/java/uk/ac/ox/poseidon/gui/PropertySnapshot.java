@@ -0,0 +1,79 @@
+/*
+ * POSEIDON, an agent-based model of fisheries
+ * Copyright (c) 2023, CoHESyS Lab, cohesys.lab@gmail.com.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.ox.poseidon.gui;
+
+import java.util.List;
+
+/**
+ * An immutable copy of some properties of an inspected object, taken by the model thread at the end of a step. Each
+ * property is a path of nested property names, the way the inspector's widgets are nested.
+ */
+public final class PropertySnapshot {
+
+    /**
+     * stands for values that couldn't be read
+     */
+    public static final Object UNREADABLE = new Object();
+
+    private final List<List<String>> paths;
+
+    private final Object[] values;
+
+    /**
+     * the runtime class of the object each property was read from, null if there was none
+     */
+    private final Class<?>[] holders;
+
+    private final long step;
+
+    public PropertySnapshot(List<List<String>> paths, Object[] values, Class<?>[] holders, long step) {
+        assert paths.size() == values.length && values.length == holders.length;
+        this.paths = paths;
+        this.values = values;
+        this.holders = holders;
+        this.step = step;
+    }
+
+    /**
+     * the very list the snapshot was taken for; compare by identity to check it is still current
+     */
+    public List<List<String>> getPaths() {
+        return paths;
+    }
+
+    public Object get(int index) {
+        return values[index];
+    }
+
+    /**
+     * @return the class of the object holding the property (the inspected object itself for top level ones), null
+     *         if a property along the path was null or unreadable
+     */
+    public Class<?> getHolder(int index) {
+        return holders[index];
+    }
+
+    public int size() {
+        return values.length;
+    }
+
+    public long getStep() {
+        return step;
+    }
+}
@@ -22,7 +22,6 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import javax.swing.*;
 import uk.ac.ox.oxfish.fisher.Fisher;
-import uk.ac.ox.oxfish.model.FishState;
 import uk.ac.ox.poseidon.gui.controls.PolicyButton;
 import uk.ac.ox.poseidon.gui.drawing.MPADrawer;
 
@@ -50,15 +49,13 @@ public class RegulationTab extends JPanel {
         jButton.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
-                // synchronize with the model
-                synchronized (gui.state.schedule) {
+                // let the model thread do it, between steps
+                gui.getCommands().run(state -> {
                     // go through all agents
-                    final FishState state = (FishState) gui.state;
                     for (Fisher fisher : state.getFishers())
                         // set new regulations!
                         fisher.setRegulation(regulations.getGlobalRegulations().apply(state));
-                }
-                // done
+                });
             }
         });
 
@@ -75,6 +72,25 @@ public class RegulationTab extends JPanel {
             }
         });
         this.add(drawerButton);
+        // batch mode: draw several MPAs, then apply them all at once
+        JCheckBox batchBox = new JCheckBox("Queue MPAs until applied");
+        JButton applyButton = new JButton("Apply queued MPAs");
+        applyButton.setEnabled(false);
+        batchBox.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                drawer.setBatching(batchBox.isSelected());
+                applyButton.setEnabled(batchBox.isSelected());
+            }
+        });
+        applyButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                drawer.applyPending();
+            }
+        });
+        this.add(batchBox);
+        this.add(applyButton);
         for (PolicyButton policy : gui.getPolicyButtons()) {
             this.add(new JSeparator());
             this.add(policy.buildJComponent(gui));
@@ -0,0 +1,121 @@
+/*
+ * POSEIDON, an agent-based model of fisheries
+ * Copyright (c) 2023, CoHESyS Lab, cohesys.lab@gmail.com.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.ox.poseidon.gui;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Decides which model steps get a frame. The model runs as fast as it can; a frame is drawn every so many steps,
+ * and that number is adapted from how long steps and frames take so that the display updates at (about) the
+ * target frame rate: a slow model gets a frame every step, a fast one fast-forwards between frames. The model
+ * waits while a frame is painted, so frames that take longer than the frame period are spaced by as many steps as
+ * fit in one of them: the frame rate drops rather than the model stalling.
+ * <p>
+ * {@link #frameDue(long)} is called by the model thread, {@link #framePainted(long, long)} by the EDT, both with
+ * times from {@link System#nanoTime()}.
+ */
+public class RenderScheduler {
+
+    /**
+     * weight of the latest measure in the running averages of step and frame times
+     */
+    private static final double SMOOTHING = .2;
+
+    private final int maxStepsPerFrame;
+
+    private double targetFps;
+
+    private int stepsPerFrame = 1;
+
+    private int stepsSinceFrame = 0;
+
+    /**
+     * running averages, in nanoseconds
+     */
+    private double stepNanos = 0;
+
+    private double frameNanos = 0;
+
+    /**
+     * when the model thread last came back to us (MIN_VALUE before the first step)
+     */
+    private long lastReturn = Long.MIN_VALUE;
+
+    private long lastFrameEnd = Long.MIN_VALUE;
+
+    public RenderScheduler(double targetFps, int maxStepsPerFrame) {
+        Preconditions.checkArgument(maxStepsPerFrame >= 1);
+        setTargetFps(targetFps);
+        this.maxStepsPerFrame = maxStepsPerFrame;
+    }
+
+    /**
+     * called after every model step
+     *
+     * @param now the current time
+     * @return true if this step should be drawn; if so {@link #framePainted(long, long)} must follow
+     */
+    public synchronized boolean frameDue(long now) {
+        if (lastReturn != Long.MIN_VALUE) stepNanos = smooth(stepNanos, now - lastReturn);
+        stepsSinceFrame++;
+        lastReturn = now;
+        // however fast the model, never leave the display still for more than a couple of frames
+        return stepsSinceFrame >= stepsPerFrame
+                || lastFrameEnd == Long.MIN_VALUE
+                || now - lastFrameEnd >= 2 * framePeriod();
+    }
+
+    /**
+     * tells the scheduler a frame was drawn
+     *
+     * @param start when painting started
+     * @param end   when painting was over
+     */
+    public synchronized void framePainted(long start, long end) {
+        frameNanos = smooth(frameNanos, end - start);
+        stepsSinceFrame = 0;
+        lastFrameEnd = end;
+
+        // the steps that fit in a frame period, or in a frame if painting can't keep up
+        final double period = Math.max(framePeriod(), frameNanos);
+        if (stepNanos <= 0) stepsPerFrame = 1;
+        else stepsPerFrame = (int) Math.max(1, Math.min(maxStepsPerFrame, Math.round(period / stepNanos)));
+    }
+
+    private static double smooth(double average, long observation) {
+        return average == 0 ? observation : average + SMOOTHING * (observation - average);
+    }
+
+    private double framePeriod() {
+        return 1e9 / targetFps;
+    }
+
+    public synchronized double getTargetFps() {
+        return targetFps;
+    }
+
+    public synchronized void setTargetFps(double targetFps) {
+        Preconditions.checkArgument(targetFps > 0, "frame rate must be positive");
+        this.targetFps = targetFps;
+    }
+
+    public synchronized int getStepsPerFrame() {
+        return stepsPerFrame;
+    }
+}
@@ -26,7 +26,6 @@ import java.io.File;
 import java.nio.file.Paths;
 import javax.swing.*;
 import sim.display.Console;
-import uk.ac.ox.oxfish.model.FishState;
 import uk.ac.ox.oxfish.utility.FishStateUtilities;
 
 /**
@@ -80,11 +79,22 @@ public class SaveButton extends JButton implements ActionListener {
 
             // log that you are about to write
             Log.info("going to save model to " + file);
-            synchronized (gui.state.schedule) {
-                gui.preCheckPoint();
-                FishStateUtilities.writeModelToFile(file, (FishState) gui.state);
-                gui.postCheckPoint();
-            }
+            final File checkpoint = file;
+            // written between steps by the model thread; the GUI stays responsive meanwhile
+            setEnabled(false);
+            gui.getCommands()
+                    .run(state -> {
+                        gui.preCheckPoint();
+                        try {
+                            FishStateUtilities.writeModelToFile(checkpoint, state);
+                        } finally {
+                            gui.postCheckPoint();
+                        }
+                    })
+                    .whenComplete((done, failure) -> {
+                        setEnabled(true);
+                        if (failure == null) Log.info("saved model to " + checkpoint);
+                    });
 
         } else {
         }
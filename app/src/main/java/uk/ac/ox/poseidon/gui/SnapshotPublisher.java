@@ -0,0 +1,210 @@
+/*
+ * POSEIDON, an agent-based model of fisheries
+ * Copyright (c) 2023, CoHESyS Lab, cohesys.lab@gmail.com.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.ox.poseidon.gui;
+
+import com.google.common.base.Preconditions;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import sim.display.GUIState;
+import sim.engine.Steppable;
+import sim.engine.Stoppable;
+
+/**
+ * Lets inspectors show model objects without reading them from the EDT. At the end of every step the model thread
+ * copies the properties each inspector displays into a new {@link PropertySnapshot}; the inspector reads the latest
+ * one whenever it refreshes. The snapshot being read and the one being built are never the same object: the new one
+ * replaces the old atomically once complete. Only immutable values are copied as they are; anything else is either
+ * turned into its text on the model thread, for widgets that only show text, or not copied at all.
+ */
+public class SnapshotPublisher {
+
+    /**
+     * held weakly: when an inspector is thrown away its source stops being published
+     */
+    private final Map<Source, Boolean> sources = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private Stoppable afterEachStep;
+
+    /**
+     * publish after every step. Call again after each (re)start of the GUI state
+     */
+    public void start(GUIState gui) {
+        if (afterEachStep != null) afterEachStep.stop();
+        afterEachStep = gui.scheduleRepeatingImmediatelyAfter(
+                (Steppable) simState -> publishAll(simState.schedule.getSteps()));
+    }
+
+    public void stop() {
+        if (afterEachStep != null) afterEachStep.stop();
+        afterEachStep = null;
+    }
+
+    /**
+     * @param toInspect the object whose properties will be copied
+     * @return the handle the inspector reads snapshots from; it must keep a reference to it
+     */
+    public Source register(Object toInspect) {
+        final Source source = new Source(toInspect);
+        sources.put(source, Boolean.TRUE);
+        return source;
+    }
+
+    /**
+     * takes a snapshot for every registered source; called by the model thread
+     */
+    public void publishAll(long step) {
+        final List<Source> toPublish;
+        synchronized (sources) {
+            toPublish = new ArrayList<>(sources.keySet());
+        }
+        for (Source source : toPublish) source.publish(step);
+    }
+
+    public int getSourceCount() {
+        return sources.size();
+    }
+
+    public static class Source {
+
+        private final Object toInspect;
+
+        /**
+         * which properties to copy; set by the inspector, read by the model thread
+         */
+        private volatile List<List<String>> paths = null;
+
+        /**
+         * for each path, whether its widget only shows the value as text; always replaced along with the paths
+         */
+        private volatile boolean[] asText = new boolean[0];
+
+        private final AtomicReference<PropertySnapshot> latest = new AtomicReference<>();
+
+        /**
+         * false while the inspector is off screen: nothing is copied for it
+         */
+        private volatile boolean showing = true;
+
+        private Source(Object toInspect) {
+            this.toInspect = toInspect;
+        }
+
+        /**
+         * @param paths  the properties to copy from now on; never modified afterwards
+         * @param asText for each path, true if its widget only shows text: values that are not immutable are then
+         *               copied as {@link String#valueOf(Object)} rather than not at all
+         */
+        public void setPaths(List<List<String>> paths, boolean[] asText) {
+            Preconditions.checkArgument(paths.size() == asText.length);
+            // written before the paths, which the model thread reads first: a snapshot mixing old paths with new
+            // flags has stale paths, and getLatest throws it away
+            this.asText = asText.clone();
+            this.paths = Collections.unmodifiableList(paths);
+        }
+
+        public void setShowing(boolean showing) {
+            this.showing = showing;
+        }
+
+        public List<List<String>> getPaths() {
+            return paths;
+        }
+
+        /**
+         * @return true if these are the paths and text flags the source already copies
+         */
+        public boolean isCopying(List<List<String>> paths, boolean[] asText) {
+            return paths.equals(this.paths) && Arrays.equals(asText, this.asText);
+        }
+
+        /**
+         * @return the most recent snapshot or null if none was taken since the paths were last set
+         */
+        public PropertySnapshot getLatest() {
+            final PropertySnapshot snapshot = latest.get();
+            return snapshot == null || snapshot.getPaths() != paths ? null : snapshot;
+        }
+
+        private void publish(long step) {
+            final List<List<String>> current = paths;
+            if (current == null || !showing) return;
+            final boolean[] text = asText;
+            if (text.length != current.size()) return; // paths being replaced: next step
+            final Object[] values = new Object[current.size()];
+            final Class<?>[] holders = new Class<?>[values.length];
+            // properties of the same nested object share its path: read it once
+            final Map<List<String>, Object> parents = new HashMap<>();
+            for (int i = 0; i < values.length; i++) {
+                final List<String> path = current.get(i);
+                final List<String> parentPath = path.subList(0, path.size() - 1);
+                Object parent = parents.get(parentPath);
+                if (parent == null) {
+                    parent = parentPath.isEmpty() ? toInspect : read(toInspect, parentPath);
+                    if (parent == null) parent = PropertySnapshot.UNREADABLE;
+                    parents.put(parentPath, parent);
+                }
+                if (parent == PropertySnapshot.UNREADABLE) {
+                    values[i] = PropertySnapshot.UNREADABLE;
+                } else {
+                    holders[i] = parent.getClass();
+                    values[i] = copy(read(parent, path.subList(path.size() - 1, path.size())), text[i]);
+                }
+            }
+            latest.set(new PropertySnapshot(current, values, holders, step));
+        }
+
+        /**
+         * the EDT must never see a live model object: it could read it while the model changes it
+         */
+        private static Object copy(Object value, boolean asText) {
+            if (value == PropertySnapshot.UNREADABLE || isImmutable(value)) return value;
+            return asText ? String.valueOf(value) : PropertySnapshot.UNREADABLE;
+        }
+
+        private static boolean isImmutable(Object value) {
+            return value == null
+                    || value instanceof String
+                    || value instanceof Enum
+                    || value instanceof Boolean
+                    || value instanceof Character
+                    || value instanceof Integer
+                    || value instanceof Long
+                    || value instanceof Double
+                    || value instanceof Float
+                    || value instanceof Short
+                    || value instanceof Byte;
+        }
+
+        private static Object read(Object bean, List<String> path) {
+            try {
+                return PropertyGetters.read(bean, path);
+            } catch (Throwable e) {
+                if (e instanceof Error) throw (Error) e;
+                // properties that throw, or nested ones whose parent is null
+                return PropertySnapshot.UNREADABLE;
+            }
+        }
+    }
+}
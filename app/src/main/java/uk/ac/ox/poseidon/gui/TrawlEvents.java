@@ -0,0 +1,68 @@
+/*
+ * POSEIDON, an agent-based model of fisheries
+ * Copyright (c) 2023, CoHESyS Lab, cohesys.lab@gmail.com.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.ox.poseidon.gui;
+
+import java.util.Arrays;
+
+/**
+ * The cells trawled in one day and how many times each, kept in primitive arrays that are reused day after day.
+ * A cell may appear more than once, in which case its counts add up.
+ */
+public class TrawlEvents {
+
+    private int[] xs = new int[16];
+
+    private int[] ys = new int[16];
+
+    private int[] counts = new int[16];
+
+    private int size = 0;
+
+    public void add(int x, int y, int count) {
+        if (size == xs.length) {
+            xs = Arrays.copyOf(xs, size * 2);
+            ys = Arrays.copyOf(ys, size * 2);
+            counts = Arrays.copyOf(counts, size * 2);
+        }
+        xs[size] = x;
+        ys[size] = y;
+        counts[size] = count;
+        size++;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getX(int event) {
+        return xs[event];
+    }
+
+    public int getY(int event) {
+        return ys[event];
+    }
+
+    public int getCount(int event) {
+        return counts[event];
+    }
+}
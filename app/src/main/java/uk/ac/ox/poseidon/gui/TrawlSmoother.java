@@ -0,0 +1,44 @@
+/*
+ * POSEIDON, an agent-based model of fisheries
+ * Copyright (c) 2023, CoHESyS Lab, cohesys.lab@gmail.com.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.ox.poseidon.gui;
+
+/**
+ * Smooths over time the number of trawls in each cell of the map. Only the cells trawled each day are given, and
+ * the smoothers only touch what they must, so that a day costs in proportion to the fishing done rather than to
+ * the size of the map. Everything is kept in primitive arrays: the daily update doesn't allocate.
+ */
+public interface TrawlSmoother {
+
+    /**
+     * add one more day of trawls
+     *
+     * @param today    the cells trawled today
+     * @param smoothed where the smoothed trawls of each cell are kept, indexed [x][y] like MASON grids.
+     *                 Cells are only updated when their value changes; values are scaled by {@link #getScale()}
+     * @return the highest smoothed value (not scaled)
+     */
+    double step(TrawlEvents today, double[][] smoothed);
+
+    /**
+     * the smoothed values are written multiplied by this; whoever colors them needs to scale their levels too
+     */
+    default double getScale() {
+        return 1;
+    }
+}
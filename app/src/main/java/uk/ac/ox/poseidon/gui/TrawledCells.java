@@ -0,0 +1,116 @@
+/*
+ * POSEIDON, an agent-based model of fisheries
+ * Copyright (c) 2023, CoHESyS Lab, cohesys.lab@gmail.com.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.ox.poseidon.gui;
+
+import java.util.Arrays;
+import sim.field.grid.IntGrid2D;
+import uk.ac.ox.oxfish.fisher.Fisher;
+import uk.ac.ox.oxfish.fisher.log.TripRecord;
+import uk.ac.ox.oxfish.geography.SeaTile;
+
+/**
+ * Finds the cells of the daily trawl map that are not zero without scanning the whole map. Trawls only happen where
+ * boats fish, so every step it looks at the cells the boats are on and at the tiles they fished on their current
+ * (and last finished) trip, which also covers cells trawled and left within a step. The cells found are reported
+ * until the daily map is reset.
+ */
+public class TrawledCells {
+
+    private final int height;
+
+    /**
+     * whether the cell (x * height + y) is in the list below
+     */
+    private final boolean[] known;
+
+    private int[] xs = new int[16];
+
+    private int[] ys = new int[16];
+
+    private int size = 0;
+
+    public TrawledCells(int width, int height) {
+        this.height = height;
+        this.known = new boolean[width * height];
+    }
+
+    /**
+     * @param fishers the boats
+     * @param trawls  the daily trawl map
+     * @param events  where to add the trawled cells, with today's trawls so far
+     */
+    public void collect(Iterable<Fisher> fishers, IntGrid2D trawls, TrawlEvents events) {
+        for (Fisher fisher : fishers) {
+            look(trawls, fisher.getLocation());
+            // where it fished on its way here; the last trip too, in case it ended within the step
+            lookAll(trawls, fisher.getCurrentTrip());
+            lookAll(trawls, fisher.getLastFinishedTrip());
+        }
+        report(trawls, events);
+    }
+
+    private void lookAll(IntGrid2D trawls, TripRecord trip) {
+        if (trip == null) return;
+        for (SeaTile tile : trip.getTilesFished()) look(trawls, tile);
+    }
+
+    private void look(IntGrid2D trawls, SeaTile tile) {
+        if (tile != null) look(trawls, tile.getGridX(), tile.getGridY());
+    }
+
+    /**
+     * keeps track of the cell from now on if it has trawls
+     */
+    public void look(IntGrid2D trawls, int x, int y) {
+        if (trawls.field[x][y] > 0 && !known[x * height + y]) remember(x, y);
+    }
+
+    /**
+     * adds the cells found so far to the events, forgetting those the daily reset has brought back to 0
+     */
+    public void report(IntGrid2D trawls, TrawlEvents events) {
+        final int[][] field = trawls.field;
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            final int x = xs[i];
+            final int y = ys[i];
+            final int count = field[x][y];
+            if (count > 0) {
+                events.add(x, y, count);
+                xs[kept] = x;
+                ys[kept] = y;
+                kept++;
+            } else {
+                known[x * height + y] = false;
+            }
+        }
+        size = kept;
+    }
+
+    private void remember(int x, int y) {
+        if (size == xs.length) {
+            xs = Arrays.copyOf(xs, size * 2);
+            ys = Arrays.copyOf(ys, size * 2);
+        }
+        xs[size] = x;
+        ys[size] = y;
+        size++;
+        known[x * height + y] = true;
+    }
+}
@@ -21,12 +21,10 @@ package uk.ac.ox.poseidon.gui;
 import java.awt.*;
 import sim.engine.SimState;
 import sim.engine.Steppable;
+import sim.field.grid.DoubleGrid2D;
 import sim.field.grid.IntGrid2D;
-import sim.field.grid.ObjectGrid2D;
-import sim.portrayal.grid.FastObjectGridPortrayal2D;
-import sim.util.gui.SimpleColorMap;
+import sim.portrayal.grid.FastValueGridPortrayal2D;
 import uk.ac.ox.oxfish.model.FishState;
-import uk.ac.ox.oxfish.model.data.MovingAverage;
 
 /**
  * Basically an aggregator of the NauticalMap's daily trawl map that instead of resetting every day
@@ -39,69 +37,78 @@ public class TrawlingHeatMap implements Steppable {
     /**
      * the actual map we want to display
      */
-    private final ObjectGrid2D smoothedHeatMap;
+    private final DoubleGrid2D smoothedHeatMap;
 
-    private final FastObjectGridPortrayal2D heatMapPortrayal;
+    private final FastValueGridPortrayal2D heatMapPortrayal;
+
+    /**
+     * one map for the whole run, its levels are moved as the maximum changes
+     */
+    private final GradientColorMap colors;
 
     /**
      * the source of the trawling data
      */
     private final IntGrid2D trawlMap;
 
+    /**
+     * how the daily trawls are smoothed over time
+     */
+    private final TrawlSmoother smoother;
+
+    /**
+     * tracks the cells with trawls, so that we never need to look at the whole map
+     */
+    private final TrawledCells trawledCells;
+
+    /**
+     * today's trawls, reused every day
+     */
+    private final TrawlEvents today = new TrawlEvents();
+
     private double maximum;
 
     public TrawlingHeatMap(IntGrid2D trawlMap, FishState model, final int movingAverageSize) {
+        this(
+                trawlMap,
+                new MovingAverageTrawlSmoother(trawlMap.getWidth(), trawlMap.getHeight(), movingAverageSize));
+    }
+
+    public TrawlingHeatMap(IntGrid2D trawlMap, TrawlSmoother smoother) {
 
         this.trawlMap = trawlMap;
+        this.smoother = smoother;
+        this.trawledCells = new TrawledCells(trawlMap.getWidth(), trawlMap.getHeight());
         maximum = 1;
 
-        smoothedHeatMap = new ObjectGrid2D(trawlMap.getWidth(), trawlMap.getHeight());
-        for (int x = 0; x < smoothedHeatMap.getWidth(); x++) {
-            for (int y = 0; y < smoothedHeatMap.getHeight(); y++) {
-                MovingAverage<Integer> averager = new MovingAverage<>(movingAverageSize);
-                averager.addObservation(0); // start it at 0
-                smoothedHeatMap.set(x, y, averager);
-            }
-        }
+        // starts at 0 everywhere
+        smoothedHeatMap = new DoubleGrid2D(trawlMap.getWidth(), trawlMap.getHeight());
 
-        heatMapPortrayal = new FastObjectGridPortrayal2D(false) {
-            @Override
-            public double doubleValue(Object obj) {
-                double average = ((MovingAverage) obj).getSmoothedObservation();
-                if (!Double.isFinite(average)) return 0;
-                else return average;
-            }
-        };
+        colors = new GradientColorMap(0, maximum, new Color(0, 0, 0, 0), Color.RED);
+        heatMapPortrayal = new FastValueGridPortrayal2D(false);
         heatMapPortrayal.setField(smoothedHeatMap);
-        heatMapPortrayal.setMap(new SimpleColorMap(0, maximum, new Color(0, 0, 0, 0), Color.RED));
+        heatMapPortrayal.setMap(colors);
     }
 
     @Override
     public void step(SimState simState) {
-        // go through all trawls and add that number to the list
-        double newMaximum = 0;
-        for (int x = 0; x < smoothedHeatMap.getWidth(); x++) {
-            for (int y = 0; y < smoothedHeatMap.getHeight(); y++) {
-                @SuppressWarnings("unchecked")
-                MovingAverage<Integer> averager = (MovingAverage<Integer>) smoothedHeatMap.get(x, y);
-                averager.addObservation(trawlMap.get(x, y));
-                assert averager.isReady();
-                newMaximum = Math.max(newMaximum, averager.getSmoothedObservation());
-            }
-        }
+        // go through today's trawls and add them to the averages
+        today.clear();
+        trawledCells.collect(((FishState) simState).getFishers(), trawlMap, today);
+        double newMaximum = smoother.step(today, smoothedHeatMap.field);
         // change the color if the current maximum is 15% above the map maximum
         if (newMaximum > maximum) {
             maximum = .85 * newMaximum;
-            heatMapPortrayal.setMap(new SimpleColorMap(0, maximum, new Color(0, 0, 0, 0), Color.RED));
+            colors.setLevels(0, maximum * smoother.getScale());
 
         } else if (maximum > 0) {
             // decrease it by 0.1% every day otherwise initial close-to port heat is the only thing that matters
             maximum = .999 * maximum;
-            heatMapPortrayal.setMap(new SimpleColorMap(0, maximum, new Color(0, 0, 0, 0), Color.RED));
+            colors.setLevels(0, maximum * smoother.getScale());
         }
     }
 
-    public FastObjectGridPortrayal2D getHeatMapPortrayal() {
+    public FastValueGridPortrayal2D getHeatMapPortrayal() {
         return heatMapPortrayal;
     }
 }
@@ -20,15 +20,14 @@ package uk.ac.ox.poseidon.gui;
 
 import com.google.common.base.Preconditions;
 import java.awt.*;
-import sim.util.gui.ColorMap;
-import sim.util.gui.SimpleColorMap;
 
 /**
  * This is actually modified from the original TriColorMap made by the very good Joey Harrison
  * who originally coded it for the RiftLand project. Thank you Joey. All I added was a second constructor.
  * <p>
  * TriColorMap is a gradient between three BOAT_COLORS. It works the same as
- * SimpleColorMap, and indeed, makes use of that class.
+ * SimpleColorMap, and indeed, makes use of its lookup-table version ({@link GradientColorMap}) for each half
+ * so that getRGB is just an array lookup.
  * For example:
  * -1 : red
  * 0 : white
@@ -39,14 +38,16 @@ import sim.util.gui.SimpleColorMap;
  *
  * @author Joey Harrison & carrknight
  */
-public class TriColorMap implements ColorMap {
-    private final double mid;
+public class TriColorMap implements VersionedColorMap {
+    private double min;
+    private double mid;
+    private double max;
     private final Color minColor;
     private final Color midColorLow;
     private final Color midColorHigh;
     private final Color maxColor;
-    private final SimpleColorMap lowerHalf;
-    private SimpleColorMap upperHalf;
+    private final GradientColorMap lowerHalf;
+    private final GradientColorMap upperHalf;
 
     public TriColorMap(double min, double mid, double max, Color minColor, Color midColor, Color maxColor) {
         this(min, mid, max, minColor, midColor, midColor, maxColor);
@@ -54,9 +55,11 @@ public class TriColorMap implements ColorMap {
 
     public TriColorMap(
             double min, double mid, double max, Color minColor, Color midColorLow, Color midColorHigh, Color maxColor) {
+        this.min = min;
         this.mid = mid;
-        lowerHalf = new SimpleColorMap(min, mid, minColor, midColorLow);
-        upperHalf = new SimpleColorMap(mid, max, midColorHigh, maxColor);
+        this.max = max;
+        lowerHalf = new GradientColorMap(min, mid, minColor, midColorLow);
+        upperHalf = new GradientColorMap(mid, max, midColorHigh, maxColor);
         this.minColor = minColor;
         this.midColorLow = midColorLow;
         this.midColorHigh = midColorHigh;
@@ -92,8 +95,7 @@ public class TriColorMap implements ColorMap {
 
     @Override
     public boolean validLevel(double level) {
-        if (level < mid) return lowerHalf.validLevel(level);
-        else return upperHalf.validLevel(level);
+        return level >= min && level <= max;
     }
 
     @Override
@@ -103,11 +105,42 @@ public class TriColorMap implements ColorMap {
 
     public void resetMax(double max) {
         Preconditions.checkArgument(max > mid);
-        upperHalf = new SimpleColorMap(mid, max, midColorHigh, maxColor);
+        this.max = max;
+        upperHalf.setLevels(mid, max, midColorHigh, maxColor);
     }
 
     public void resetMin(double min) {
         Preconditions.checkArgument(min < mid);
-        upperHalf = new SimpleColorMap(min, mid, minColor, midColorLow);
+        this.min = min;
+        lowerHalf.setLevels(min, mid, minColor, midColorLow);
+    }
+
+    /**
+     * moves all three levels at once
+     */
+    public void setLevels(double min, double mid, double max) {
+        Preconditions.checkArgument(min < mid && mid < max);
+        this.min = min;
+        this.mid = mid;
+        this.max = max;
+        lowerHalf.setLevels(min, mid, minColor, midColorLow);
+        upperHalf.setLevels(mid, max, midColorHigh, maxColor);
+    }
+
+    public double getMin() {
+        return min;
+    }
+
+    public double getMid() {
+        return mid;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    @Override
+    public long getVersion() {
+        return lowerHalf.getVersion() + upperHalf.getVersion();
     }
 }
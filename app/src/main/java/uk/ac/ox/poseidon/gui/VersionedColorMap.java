@@ -0,0 +1,33 @@
+/*
+ * POSEIDON, an agent-based model of fisheries
+ * Copyright (c) 2023, CoHESyS Lab, cohesys.lab@gmail.com.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.ox.poseidon.gui;
+
+import sim.util.gui.ColorMap;
+
+/**
+ * A color map that can change the color it gives to a level (moving its min/max for example) and says so by
+ * increasing its version, so that whoever cached colors knows when to throw them away.
+ */
+public interface VersionedColorMap extends ColorMap {
+
+    /**
+     * @return a number that changes every time a level may have been given a different color
+     */
+    long getVersion();
+}
@@ -0,0 +1,340 @@
+/*
+ * POSEIDON, an agent-based model of fisheries
+ * Copyright (c) 2023, CoHESyS Lab, cohesys.lab@gmail.com.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.ox.poseidon.gui.drawing;
+
+import java.awt.*;
+import java.awt.geom.Rectangle2D;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import sim.field.grid.SparseGrid2D;
+import sim.portrayal.DrawInfo2D;
+import sim.portrayal.LocationWrapper;
+import sim.portrayal.SimplePortrayal2D;
+import sim.util.Bag;
+import sim.util.Int2D;
+import uk.ac.ox.poseidon.gui.GradientColorMap;
+
+/**
+ * The boats layer. Rather than going through each boat's portrayal, every boat with a sprite is blitted, at the
+ * {@link SpriteAtlas} size closest to the cell, in one pass, boats sharing a sprite drawn together. Selected boats
+ * (and boats without a sprite) are still drawn by their own portrayal, so they get their circle.
+ * Hit-testing, selection and inspection go through the per-boat portrayals as usual.
+ * <p>
+ * Zoomed out below {@link #getDetailThreshold()} pixels per cell the icons would just pile up, so each cell with
+ * boats is drawn as a dot instead, colored either by how many boats are there or by the fleet most of them
+ * belong to.
+ */
+public class BoatLayerPortrayal extends IndexedSparseGridPortrayal2D {
+
+    /**
+     * what the dots show when zoomed out
+     */
+    public enum Aggregation {
+        DENSITY,
+        DOMINANT_FLEET
+    }
+
+    /**
+     * dots are never smaller than this, in pixels, or single boats would vanish
+     */
+    private static final int MIN_DOT_SIZE = 2;
+
+    /**
+     * the sprite of each boat; boats are added and removed by the model thread
+     */
+    private final Map<Object, SpriteAtlas.Sprite> sprites = new ConcurrentHashMap<>();
+
+    /**
+     * the ARGB color of each boat's fleet
+     */
+    private final Map<Object, Integer> fleetColors = new ConcurrentHashMap<>();
+
+    private final Set<Object> selected = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    /**
+     * screen positions of the boats to draw, by sprite size; reused frame after frame
+     */
+    private final Map<Image, Batch> batches = new IdentityHashMap<>();
+
+    /**
+     * boats to draw through their own portrayal this frame
+     */
+    private final List<Object> individually = new ArrayList<>();
+
+    private double detailThreshold = 3;
+
+    private Aggregation aggregation = Aggregation.DENSITY;
+
+    /**
+     * the fleet colors met so far, in the order they were first met; there are only a few, one per fleet
+     */
+    private int[] palette = new int[0];
+
+    /**
+     * one per boat in the clip this frame: its cell (column-major) in the high half, its palette color in the low
+     * one. Sorted, the boats of a cell and of each of its fleets are next to each other
+     */
+    private long[] boatKeys = new long[64];
+
+    /**
+     * a lone boat is light red, darker the more boats crowd the cell
+     */
+    private final GradientColorMap density =
+            new GradientColorMap(1, 2, new Color(255, 80, 80), new Color(80, 0, 0), null);
+
+    public void setSprite(Object boat, SpriteAtlas.Sprite sprite) {
+        sprites.put(boat, sprite);
+    }
+
+    public void removeSprite(Object boat) {
+        sprites.remove(boat);
+        fleetColors.remove(boat);
+    }
+
+    public void setFleetColor(Object boat, Color color) {
+        fleetColors.put(boat, color.getRGB());
+    }
+
+    @Override
+    public boolean setSelected(LocationWrapper wrapper, boolean selected) {
+        if (selected) this.selected.add(wrapper.getObject());
+        else this.selected.remove(wrapper.getObject());
+        return super.setSelected(wrapper, selected);
+    }
+
+    @Override
+    protected void hitOrDraw(Graphics2D graphics, DrawInfo2D info, Bag putInHere) {
+        final SparseGrid2D grid = (SparseGrid2D) getField();
+        // picking is done cell by cell by the parent
+        if (graphics == null || grid == null) {
+            super.hitOrDraw(graphics, info, putInHere);
+            return;
+        }
+
+        final double xScale = info.draw.width / grid.getWidth();
+        final double yScale = info.draw.height / grid.getHeight();
+        if (xScale < detailThreshold || yScale < detailThreshold) drawAggregated(grid, graphics, info, xScale, yScale);
+        else drawSprites(grid, graphics, info, xScale, yScale);
+
+        // selected boats go on top
+        for (Object boat : individually) {
+            final Int2D location = grid.getObjectLocation(boat);
+            final Object portrayal = getPortrayalForObject(boat);
+            if (location == null || !(portrayal instanceof SimplePortrayal2D)) continue;
+            final DrawInfo2D boatInfo = new DrawInfo2D(
+                    info.gui,
+                    this,
+                    new Rectangle2D.Double(
+                            Math.floor(info.draw.x + xScale * location.x) + xScale / 2,
+                            Math.floor(info.draw.y + yScale * location.y) + yScale / 2,
+                            xScale,
+                            yScale),
+                    info.clip);
+            boatInfo.location = location;
+            boatInfo.precise = info.precise;
+            boatInfo.selected = selected.contains(boat);
+            ((SimplePortrayal2D) portrayal).draw(boat, graphics, boatInfo);
+        }
+        individually.clear();
+    }
+
+    private void drawSprites(SparseGrid2D grid, Graphics2D graphics, DrawInfo2D info, double xScale, double yScale) {
+        // a boat is drawn within its cell, so anything further than a cell from the clip is invisible
+        final double minX = info.clip.x - xScale;
+        final double maxX = info.clip.x + info.clip.width + xScale;
+        final double minY = info.clip.y - yScale;
+        final double maxY = info.clip.y + info.clip.height + yScale;
+
+        final Bag boats = grid.getAllObjects();
+        for (int i = 0; i < boats.numObjs; i++) {
+            final Object boat = boats.objs[i];
+            final Int2D location = grid.getObjectLocation(boat);
+            if (location == null) continue;
+            final double centerX = Math.floor(info.draw.x + xScale * location.x) + xScale / 2;
+            final double centerY = Math.floor(info.draw.y + yScale * location.y) + yScale / 2;
+            if (centerX < minX || centerX > maxX || centerY < minY || centerY > maxY) continue;
+
+            final SpriteAtlas.Sprite sprite = sprites.get(boat);
+            if (sprite == null || selected.contains(boat)) individually.add(boat);
+            else batches.computeIfAbsent(sprite.forCell(xScale, yScale), key -> new Batch()).add(centerX, centerY);
+        }
+
+        for (Map.Entry<Image, Batch> entry : batches.entrySet()) {
+            final Batch batch = entry.getValue();
+            if (batch.size == 0) continue;
+            final Image scaled = entry.getKey();
+            final int halfWidth = scaled.getWidth(null) / 2;
+            final int halfHeight = scaled.getHeight(null) / 2;
+            for (int i = 0; i < batch.size; i++)
+                graphics.drawImage(scaled, (int) batch.xs[i] - halfWidth, (int) batch.ys[i] - halfHeight, null);
+            batch.size = 0;
+        }
+    }
+
+    /**
+     * one pass over the boats in the clip to list their cells (and fleets), sorted so that the boats of each cell
+     * can be counted, then one dot per occupied cell. Nothing is kept per map cell: memory grows with the boats only
+     */
+    private void drawAggregated(SparseGrid2D grid, Graphics2D graphics, DrawInfo2D info, double xScale, double yScale) {
+        final int width = grid.getWidth();
+        final int height = grid.getHeight();
+        final boolean byFleet = aggregation == Aggregation.DOMINANT_FLEET;
+
+        // dots can be larger than their cell: keep a cell of margin around the clip
+        final int minX = (int) Math.floor((info.clip.x - info.draw.x) / xScale) - 1;
+        final int maxX = (int) Math.floor((info.clip.x + info.clip.width - info.draw.x) / xScale) + 1;
+        final int minY = (int) Math.floor((info.clip.y - info.draw.y) / yScale) - 1;
+        final int maxY = (int) Math.floor((info.clip.y + info.clip.height - info.draw.y) / yScale) + 1;
+        final boolean wholeField = minX < 0 && minY < 0 && maxX >= width && maxY >= height;
+
+        int boatsInClip = 0;
+        final Bag boats = grid.getAllObjects();
+        for (int i = 0; i < boats.numObjs; i++) {
+            final Object boat = boats.objs[i];
+            final Int2D location = grid.getObjectLocation(boat);
+            if (location == null) continue;
+            if (location.x < minX || location.x > maxX || location.y < minY || location.y > maxY) continue;
+            if (selected.contains(boat)) individually.add(boat);
+
+            final long cell = location.x * (long) height + location.y;
+            final int color = byFleet ? paletteIndex(fleetColors.getOrDefault(boat, Color.BLACK.getRGB())) : 0;
+            if (boatsInClip == boatKeys.length) boatKeys = Arrays.copyOf(boatKeys, boatsInClip * 2);
+            boatKeys[boatsInClip++] = cell << 32 | color;
+        }
+        Arrays.sort(boatKeys, 0, boatsInClip);
+
+        // how crowded is the crowdest cell
+        int crowdest = 1;
+        for (int i = 0; i < boatsInClip; ) {
+            final int next = endOfCell(i, boatsInClip);
+            crowdest = Math.max(crowdest, next - i);
+            i = next;
+        }
+        // a partial repaint only sees part of the boats: it may make the scale longer, never shorter
+        if (crowdest > density.getMaxLevel() || (wholeField && crowdest != density.getMaxLevel()))
+            density.setLevels(1, Math.max(2, crowdest));
+
+        final int dotWidth = Math.max(MIN_DOT_SIZE, (int) Math.ceil(xScale));
+        final int dotHeight = Math.max(MIN_DOT_SIZE, (int) Math.ceil(yScale));
+        final Color oldColor = graphics.getColor();
+        int currentRGB = 0;
+        for (int i = 0; i < boatsInClip; ) {
+            final int next = endOfCell(i, boatsInClip);
+            final int cell = (int) (boatKeys[i] >>> 32);
+            final int rgb = byFleet ? palette[mostCommonColor(i, next)] : density.getRGB(next - i);
+            if (rgb != currentRGB || i == 0) {
+                graphics.setColor(new Color(rgb, true));
+                currentRGB = rgb;
+            }
+            final int x = (int) Math.floor(info.draw.x + xScale * (cell / height) + (xScale - dotWidth) / 2);
+            final int y = (int) Math.floor(info.draw.y + yScale * (cell % height) + (yScale - dotHeight) / 2);
+            graphics.fillRect(x, y, dotWidth, dotHeight);
+            i = next;
+        }
+        graphics.setColor(oldColor);
+    }
+
+    /**
+     * @return the position after the last sorted boat in the same cell as the one at start
+     */
+    private int endOfCell(int start, int end) {
+        final long cell = boatKeys[start] >>> 32;
+        int next = start + 1;
+        while (next < end && boatKeys[next] >>> 32 == cell) next++;
+        return next;
+    }
+
+    /**
+     * the palette color of the fleet with most boats among the sorted boats of a cell; ties go to the fleet met
+     * first, which sorts first
+     */
+    private int mostCommonColor(int start, int end) {
+        int most = (int) boatKeys[start];
+        int mostBoats = 0;
+        for (int i = start; i < end; ) {
+            int next = i + 1;
+            while (next < end && boatKeys[next] == boatKeys[i]) next++;
+            if (next - i > mostBoats) {
+                most = (int) boatKeys[i];
+                mostBoats = next - i;
+            }
+            i = next;
+        }
+        return most;
+    }
+
+    /**
+     * @return the position of the color in the palette, adding it if new
+     */
+    private int paletteIndex(int rgb) {
+        for (int color = 0; color < palette.length; color++) if (palette[color] == rgb) return color;
+        palette = Arrays.copyOf(palette, palette.length + 1);
+        palette[palette.length - 1] = rgb;
+        return palette.length - 1;
+    }
+
+    /**
+     * @return true if the boat is selected in the display; EDT only
+     */
+    public boolean isSelected(Object boat) {
+        return selected.contains(boat);
+    }
+
+    public double getDetailThreshold() {
+        return detailThreshold;
+    }
+
+    /**
+     * @param detailThreshold below this many pixels per cell boats are aggregated into dots
+     */
+    public void setDetailThreshold(double detailThreshold) {
+        this.detailThreshold = detailThreshold;
+    }
+
+    public Aggregation getAggregation() {
+        return aggregation;
+    }
+
+    public void setAggregation(Aggregation aggregation) {
+        this.aggregation = aggregation;
+    }
+
+    /**
+     * a growable list of screen positions
+     */
+    private static class Batch {
+
+        private double[] xs = new double[64];
+
+        private double[] ys = new double[64];
+
+        private int size = 0;
+
+        private void add(double x, double y) {
+            if (size == xs.length) {
+                xs = Arrays.copyOf(xs, size * 2);
+                ys = Arrays.copyOf(ys, size * 2);
+            }
+            xs[size] = x;
+            ys[size] = y;
+            size++;
+        }
+    }
+}
@@ -18,14 +18,14 @@
 
 package uk.ac.ox.poseidon.gui.drawing;
 
-import com.google.common.collect.HashBasedTable;
-import com.google.common.collect.Table;
 import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Map;
 import javax.imageio.ImageIO;
 import sim.display.GUIState;
+import sim.portrayal.DrawInfo2D;
 import sim.portrayal.Inspector;
 import sim.portrayal.LocationWrapper;
 import sim.portrayal.simple.ImagePortrayal2D;
@@ -45,18 +45,25 @@ public class BoatPortrayalFactory {
     private final BufferedImage shipIcon;
     private final BufferedImage canoeIcon;
     private final FishGUI gui;
-    // when building a lot of pictures, all of the same type the getColor will slow everything down.
-    // this makes it faster
-    private final Table<BufferedImage, Color, BufferedImage> portrayalCache = HashBasedTable.create();
+    // every icon in every color, prebuilt at all the sizes it can be drawn at
+    private final SpriteAtlas atlas;
 
     public BoatPortrayalFactory(FishGUI gui) throws IOException {
         boatIcon = ImageIO.read(FishGUI.IMAGES_PATH.resolve("boat.png").toFile());
         shipIcon = ImageIO.read(FishGUI.IMAGES_PATH.resolve("ship.png").toFile());
         canoeIcon = ImageIO.read(FishGUI.IMAGES_PATH.resolve("canoe.png").toFile());
         this.gui = gui;
+        atlas = SpriteAtlas.build(Arrays.asList(boatIcon, shipIcon, canoeIcon), BOAT_COLORS.values());
     }
 
     public BoatPortrayal build(Fisher fisher) {
+        return new BoatPortrayal(spriteFor(fisher), gui);
+    }
+
+    /**
+     * the icon of the boat, colored by its tags
+     */
+    public SpriteAtlas.Sprite spriteFor(Fisher fisher) {
 
         BufferedImage correctImage;
         if (fisher.getTags().contains("ship")) correctImage = shipIcon;
@@ -64,41 +71,51 @@ public class BoatPortrayalFactory {
         else correctImage = boatIcon;
 
         for (Map.Entry<String, Color> color : BOAT_COLORS.entrySet()) {
-            if (fisher.getTags().contains(color.getKey()))
-                return new BoatPortrayal(colorImage(correctImage, color.getValue()), gui);
+            if (fisher.getTags().contains(color.getKey())) return atlas.get(correctImage, color.getValue());
         }
         // there is no color
-        return new BoatPortrayal(correctImage, gui);
+        return atlas.get(correctImage, SpriteAtlas.UNTINTED);
     }
 
-    public BufferedImage colorImage(BufferedImage old, Color newColor) {
-
-        if (!portrayalCache.contains(old, newColor)) {
-            BufferedImage img =
-                    new BufferedImage(old.getColorModel(), old.copyData(null), old.isAlphaPremultiplied(), null);
-            // grabbed from here: http://stackoverflow.com/questions/532586/change-a-specific-color-in-an-imageicon
-            final int oldRGB = Color.black.getRGB();
-            final int newRGB = newColor.getRGB();
-            for (int x = 0; x < img.getWidth(); x++) {
-                for (int y = 0; y < img.getHeight(); y++) {
-                    if (img.getRGB(x, y) == oldRGB) img.setRGB(x, y, newRGB);
-                }
-            }
-            portrayalCache.put(old, newColor, img);
+    /**
+     * the color of the boat's fleet (its color tag), black if it has none
+     */
+    public Color colorFor(Fisher fisher) {
+        for (Map.Entry<String, Color> color : BOAT_COLORS.entrySet()) {
+            if (fisher.getTags().contains(color.getKey())) return color.getValue();
         }
-        return portrayalCache.get(old, newColor);
+        return Color.BLACK;
+    }
+
+    public BufferedImage colorImage(BufferedImage old, Color newColor) {
+        return atlas.get(old, newColor).getOriginal();
     }
 
     private static class BoatPortrayal extends ImagePortrayal2D {
 
         private static final long serialVersionUID = -1087208333467756656L;
         final FishGUI gui;
+        final SpriteAtlas.Sprite sprite;
 
-        public BoatPortrayal(Image image, FishGUI gui) {
-            super(image);
+        public BoatPortrayal(SpriteAtlas.Sprite sprite, FishGUI gui) {
+            super(sprite.getOriginal());
+            this.sprite = sprite;
             this.gui = gui;
         }
 
+        /**
+         * blits the prescaled copy closest to the cell size, centered on the boat
+         */
+        @Override
+        public void draw(Object object, Graphics2D graphics, DrawInfo2D info) {
+            final Image level = sprite.forCell(info.draw.width * scale, info.draw.height * scale);
+            graphics.drawImage(
+                    level,
+                    (int) (info.draw.x - level.getWidth(null) / 2.0),
+                    (int) (info.draw.y - level.getHeight(null) / 2.0),
+                    null);
+        }
+
         @Override
         public Inspector getInspector(LocationWrapper wrapper, GUIState state) {
             return wrapper == null ? null : new MetaInspector(wrapper.getObject(), gui);
@@ -0,0 +1,226 @@
+/*
+ * POSEIDON, an agent-based model of fisheries
+ * Copyright (c) 2023, CoHESyS Lab, cohesys.lab@gmail.com.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.ox.poseidon.gui.drawing;
+
+import com.google.common.base.Preconditions;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+import sim.engine.SimState;
+import sim.engine.Steppable;
+import uk.ac.ox.oxfish.fisher.Fisher;
+import uk.ac.ox.oxfish.geography.SeaTile;
+import uk.ac.ox.oxfish.model.FishState;
+
+/**
+ * Where every boat has been over the last few steps. All the trails share one ring of grid positions: each boat
+ * owns a slot of {@code length} positions and all slots advance together, once per step, so the whole fleet
+ * costs two ints per boat per step of trail and nothing is allocated as the boats move.
+ * <p>
+ * Stepped by the model thread and read by the EDT without locking: at worst a frame shows a trail that is a step
+ * behind.
+ */
+public class BoatTrails implements Steppable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int gridWidth;
+
+    private final int gridHeight;
+
+    /**
+     * positions kept per boat
+     */
+    private volatile int length;
+
+    /**
+     * the length asked for by the GUI, applied by the model thread at the next step
+     */
+    private volatile int requestedLength;
+
+    /**
+     * slot-major: position i of the boat in slot s is at s * length + i
+     */
+    private volatile int[] xs;
+
+    private volatile int[] ys;
+
+    /**
+     * how many positions each slot holds, at most {@link #length}
+     */
+    private volatile int[] recorded;
+
+    /**
+     * the boat in each slot, so that the GUI can draw only some trails
+     */
+    private volatile Object[] owners;
+
+    /**
+     * the last step each slot's boat was seen at; slots of boats that disappear are recycled
+     */
+    private long[] lastSeen;
+
+    /**
+     * where in the ring the latest positions are
+     */
+    private volatile int head = 0;
+
+    /**
+     * slots in use are all below this
+     */
+    private volatile int slotsInUse = 0;
+
+    private final Map<Fisher, Integer> slots = new IdentityHashMap<>();
+
+    private int[] freeSlots = new int[16];
+
+    private int freeCount = 0;
+
+    private long steps = 0;
+
+    public BoatTrails(int gridWidth, int gridHeight, int length) {
+        this.gridWidth = gridWidth;
+        this.gridHeight = gridHeight;
+        Preconditions.checkArgument(length > 1, "a trail needs at least two positions");
+        this.requestedLength = length;
+        allocate(length, 64);
+    }
+
+    private void allocate(int length, int capacity) {
+        this.xs = new int[capacity * length];
+        this.ys = new int[capacity * length];
+        this.recorded = new int[capacity];
+        this.owners = new Object[capacity];
+        this.lastSeen = new long[capacity];
+        this.slots.clear();
+        this.freeCount = 0;
+        this.slotsInUse = 0;
+        this.head = 0;
+        this.length = length;
+    }
+
+    @Override
+    public void step(SimState simState) {
+        steps++;
+        if (requestedLength != length) allocate(requestedLength, recorded.length);
+        final int length = this.length;
+        final int next = (head + 1) % length;
+        for (Fisher fisher : ((FishState) simState).getFishers()) {
+            final SeaTile location = fisher.getLocation();
+            if (location == null) continue;
+            final int slot = slotOf(fisher);
+            xs[slot * length + next] = location.getGridX();
+            ys[slot * length + next] = location.getGridY();
+            if (recorded[slot] < length) recorded[slot]++;
+            lastSeen[slot] = steps;
+        }
+        // boats that are gone free their slot
+        for (int slot = 0; slot < slotsInUse; slot++) {
+            if (recorded[slot] > 0 && lastSeen[slot] != steps) {
+                recorded[slot] = 0;
+                owners[slot] = null;
+                if (freeCount == freeSlots.length) freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+                freeSlots[freeCount++] = slot;
+            }
+        }
+        slots.values().removeIf(slot -> recorded[slot] == 0);
+        head = next;
+    }
+
+    private int slotOf(Fisher fisher) {
+        final Integer existing = slots.get(fisher);
+        if (existing != null) return existing;
+
+        final int slot;
+        if (freeCount > 0) slot = freeSlots[--freeCount];
+        else {
+            if (slotsInUse == recorded.length) grow();
+            slot = slotsInUse++;
+        }
+        recorded[slot] = 0;
+        owners[slot] = fisher;
+        slots.put(fisher, slot);
+        return slot;
+    }
+
+    private void grow() {
+        final int capacity = recorded.length * 2;
+        // publish the larger arrays before anybody can be pointed at the new slots
+        xs = Arrays.copyOf(xs, capacity * length);
+        ys = Arrays.copyOf(ys, capacity * length);
+        lastSeen = Arrays.copyOf(lastSeen, capacity);
+        owners = Arrays.copyOf(owners, capacity);
+        recorded = Arrays.copyOf(recorded, capacity);
+    }
+
+    /**
+     * changes how many steps the trails span, from the next step on; trails drawn so far are forgotten
+     */
+    public void setLength(int length) {
+        Preconditions.checkArgument(length > 1, "a trail needs at least two positions");
+        this.requestedLength = length;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    public int getGridWidth() {
+        return gridWidth;
+    }
+
+    public int getGridHeight() {
+        return gridHeight;
+    }
+
+    /**
+     * goes through every trail, newest position first
+     */
+    public void forEachTrail(TrailVisitor visitor) {
+        forEachTrail(boat -> true, visitor);
+    }
+
+    /**
+     * goes through the trails of the boats accepted, newest position first
+     */
+    public void forEachTrail(Predicate<Object> boats, TrailVisitor visitor) {
+        final int length = this.length;
+        final int head = this.head;
+        final int[] xs = this.xs;
+        final int[] ys = this.ys;
+        final int[] recorded = this.recorded;
+        final Object[] owners = this.owners;
+        final int slots = Math.min(slotsInUse, Math.min(recorded.length, owners.length));
+        if (xs.length < slots * length) return; // resized halfway; next frame will do
+        for (int slot = 0; slot < slots; slot++) {
+            final Object owner = owners[slot];
+            if (recorded[slot] > 1 && owner != null && boats.test(owner))
+                visitor.visit(xs, ys, slot * length, head, recorded[slot], length);
+        }
+    }
+
+    /**
+     * receives a trail stored in a ring: position i steps ago is at offset + (head - i) mod length
+     */
+    @FunctionalInterface
+    public interface TrailVisitor {
+        void visit(int[] xs, int[] ys, int offset, int head, int positions, int length);
+    }
+}
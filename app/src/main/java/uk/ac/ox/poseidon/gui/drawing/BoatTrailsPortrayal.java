@@ -0,0 +1,146 @@
+/*
+ * POSEIDON, an agent-based model of fisheries
+ * Copyright (c) 2023, CoHESyS Lab, cohesys.lab@gmail.com.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.ox.poseidon.gui.drawing;
+
+import java.awt.*;
+import java.awt.geom.Path2D;
+import java.util.function.Predicate;
+import sim.portrayal.DrawInfo2D;
+import sim.portrayal.FieldPortrayal2D;
+import sim.portrayal.Portrayal;
+import sim.portrayal.SimplePortrayal2D;
+
+/**
+ * Draws {@link BoatTrails} as polylines, all of them in one pass. With fading on, segments are grouped by age in a
+ * few shades, oldest faintest, so that the whole fleet takes one path per shade rather than one per trail.
+ * <p>
+ * Only the trails of the selected boats are drawn, unless all trails are asked for.
+ */
+public class BoatTrailsPortrayal extends FieldPortrayal2D {
+
+    /**
+     * how many shades fading trails go through
+     */
+    private static final int FADE_LEVELS = 8;
+
+    private Color color = Color.BLUE;
+
+    private boolean fading = true;
+
+    private float lineWidth = 1;
+
+    private boolean allTrails = false;
+
+    /**
+     * which boats are selected; called on the EDT
+     */
+    private Predicate<Object> selection = boat -> false;
+
+    /**
+     * trails can't be picked or inspected
+     */
+    private final SimplePortrayal2D defaultPortrayal = new SimplePortrayal2D();
+
+    @Override
+    public void draw(Object object, Graphics2D graphics, DrawInfo2D info) {
+        final BoatTrails trails = (BoatTrails) getField();
+        if (trails == null) return;
+
+        final double xScale = info.draw.width / trails.getGridWidth();
+        final double yScale = info.draw.height / trails.getGridHeight();
+        final double startX = info.draw.x + xScale / 2;
+        final double startY = info.draw.y + yScale / 2;
+        final int levels = fading ? FADE_LEVELS : 1;
+        final Path2D.Float[] shades = new Path2D.Float[levels];
+        for (int level = 0; level < levels; level++) shades[level] = new Path2D.Float();
+
+        trails.forEachTrail(allTrails ? boat -> true : selection, (xs, ys, offset, head, positions, length) -> {
+            int level = -1;
+            for (int age = 0; age < positions; age++) {
+                final int index = offset + Math.floorMod(head - age, length);
+                final float x = (float) (startX + xScale * xs[index]);
+                final float y = (float) (startY + yScale * ys[index]);
+                // a segment takes the shade of its newer end; switching shade starts a new polyline there
+                final int shade = age * levels / length;
+                if (shade != level) {
+                    if (level >= 0) shades[level].lineTo(x, y);
+                    if (age < positions - 1) shades[shade].moveTo(x, y);
+                    level = shade;
+                } else {
+                    shades[level].lineTo(x, y);
+                }
+            }
+        });
+
+        final Stroke oldStroke = graphics.getStroke();
+        final Paint oldPaint = graphics.getPaint();
+        graphics.setStroke(new BasicStroke(lineWidth));
+        for (int level = 0; level < levels; level++) {
+            final int alpha = color.getAlpha() * (levels - level) / levels;
+            graphics.setPaint(new Color(color.getRed(), color.getGreen(), color.getBlue(), alpha));
+            graphics.draw(shades[level]);
+        }
+        graphics.setStroke(oldStroke);
+        graphics.setPaint(oldPaint);
+    }
+
+    @Override
+    public Portrayal getDefaultPortrayal() {
+        return defaultPortrayal;
+    }
+
+    public Color getColor() {
+        return color;
+    }
+
+    public void setColor(Color color) {
+        this.color = color;
+    }
+
+    public boolean isFading() {
+        return fading;
+    }
+
+    public void setFading(boolean fading) {
+        this.fading = fading;
+    }
+
+    public boolean isAllTrails() {
+        return allTrails;
+    }
+
+    /**
+     * @param allTrails true to draw the trails of all the boats rather than only of the selected ones
+     */
+    public void setAllTrails(boolean allTrails) {
+        this.allTrails = allTrails;
+    }
+
+    public void setSelection(Predicate<Object> selection) {
+        this.selection = selection;
+    }
+
+    public float getLineWidth() {
+        return lineWidth;
+    }
+
+    public void setLineWidth(float lineWidth) {
+        this.lineWidth = lineWidth;
+    }
+}
@@ -18,9 +18,9 @@
 
 package uk.ac.ox.poseidon.gui.drawing;
 
-import java.util.function.Function;
 import sim.util.gui.ColorMap;
-import uk.ac.ox.oxfish.geography.SeaTile;
+import uk.ac.ox.poseidon.gui.ModelCommandQueue;
+import uk.ac.ox.poseidon.gui.VersionedColorMap;
 
 /**
  * A color map and a way to encode the seatile in a way that is understandable
@@ -30,28 +30,76 @@ public class ColorEncoding {
 
     private final ColorMap map;
 
-    private final Function<SeaTile, Double> encoding;
+    private final DoubleEncoding encoding;
 
     /**
      * whether we expect this to change values over time
      */
     private final boolean immutable;
 
-    public ColorEncoding(ColorMap map, Function<SeaTile, Double> encoding, boolean immutable) {
+    /**
+     * whether evaluating the encoding over the whole map takes long enough that it ought to be done in the
+     * background, in parallel
+     */
+    private final boolean expensive;
+
+    public ColorEncoding(ColorMap map, DoubleEncoding encoding, boolean immutable) {
+        this(map, encoding, immutable, false);
+    }
+
+    public ColorEncoding(ColorMap map, DoubleEncoding encoding, boolean immutable, boolean expensive) {
         this.map = map;
         this.encoding = encoding;
         this.immutable = immutable;
+        this.expensive = expensive;
     }
 
     public ColorMap getMap() {
         return map;
     }
 
-    public Function<SeaTile, Double> getEncoding() {
+    public DoubleEncoding getEncoding() {
         return encoding;
     }
 
     public boolean isImmutable() {
         return immutable;
     }
+
+    /**
+     * expensive encodings are evaluated on several threads at once, between model steps (see
+     * {@link ColorfulGrid#setCommands(ModelCommandQueue)}); they may read the model freely but must never change it,
+     * nor any state of their own that isn't thread-safe
+     */
+    public boolean isExpensive() {
+        return expensive;
+    }
+
+    /**
+     * called with the values of the whole map every time they are computed, possibly off the EDT.
+     * Encodings that adapt their colors to what they show override this; by default it does nothing
+     *
+     * @param values the values of each cell, column-major
+     */
+    public void observe(double[] values) {}
+
+    /**
+     * where to report how far background evaluations of this encoding got; null (the default) if nobody cares
+     */
+    public EvaluationProgress getProgress() {
+        return null;
+    }
+
+    /**
+     * called on the EDT before each frame drawn with this encoding: the only moment it is safe to change the map
+     */
+    public void prepareFrame() {}
+
+    /**
+     * changes whenever the map starts giving different colors to the same values, so that whoever cached
+     * colors knows to recompute them all. Maps that don't say are assumed never to change.
+     */
+    public long getMapVersion() {
+        return map instanceof VersionedColorMap ? ((VersionedColorMap) map).getVersion() : 0;
+    }
 }
@@ -24,19 +24,23 @@ import java.awt.*;
 import java.util.*;
 import java.util.List;
 import java.util.Queue;
-import java.util.function.Function;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.DoubleUnaryOperator;
 import org.metawidget.inspector.annotation.UiHidden;
 import sim.display.GUIState;
+import sim.field.grid.ObjectGrid2D;
+import sim.portrayal.DrawInfo2D;
 import sim.portrayal.Inspector;
 import sim.portrayal.LocationWrapper;
 import sim.portrayal.grid.FastObjectGridPortrayal2D;
 import sim.util.gui.ColorMap;
-import sim.util.gui.SimpleColorMap;
 import uk.ac.ox.oxfish.biology.GlobalBiology;
 import uk.ac.ox.oxfish.biology.Species;
 import uk.ac.ox.oxfish.geography.SeaTile;
 import uk.ac.ox.poseidon.gui.FishGUI;
+import uk.ac.ox.poseidon.gui.GradientColorMap;
 import uk.ac.ox.poseidon.gui.MetaInspector;
+import uk.ac.ox.poseidon.gui.ModelCommandQueue;
 import uk.ac.ox.poseidon.gui.TriColorMap;
 
 /**
@@ -48,7 +52,7 @@ public class ColorfulGrid extends FastObjectGridPortrayal2D {
     /**
      * when drawing biomass use the transform of the current biomass rather than the biomass itself (to avoid large numbers dominating everything)
      */
-    private static final Function<Double, Double> BIOMASS_TRANSFORM = aDouble -> Math.sqrt(aDouble);
+    private static final DoubleUnaryOperator BIOMASS_TRANSFORM = Math::sqrt;
 
     private static final double MAX_BIOMASS = 5000;
     /**
@@ -61,6 +65,58 @@ public class ColorfulGrid extends FastObjectGridPortrayal2D {
     private final Map<String, ColorEncoding> encodings;
     private ColorEncoding selected;
     private String selectedName;
+
+    /**
+     * the values each encoding had the last time it was drawn, so that repaints don't have to query the model;
+     * possibly shared with other grids drawing the same encodings
+     */
+    private final LayerCache cache;
+
+    private EncodingRaster selectedRaster;
+
+    /**
+     * the model step we are displaying; mutable encodings are re-evaluated (once) whenever this moves
+     */
+    private volatile long currentStep = -1;
+
+    /**
+     * what was drawn last frame, one pixel per cell. Only the cells whose value changed get repainted into it
+     */
+    private RetainedGridImage backBuffer;
+
+    /**
+     * immutable encodings are rendered once into their own image (and its scaled copies), so going back to them is
+     * just a blit
+     */
+    private final Map<ColorEncoding, RetainedGridImage> prerendered = new HashMap<>();
+
+    /**
+     * the image drawn last frame; shown again while the selected encoding is still being evaluated in the background
+     */
+    private RetainedGridImage lastDrawn;
+
+    /**
+     * called when a background evaluation is over, so that the displays showing this grid can repaint
+     */
+    private final List<Runnable> repaintListeners = new LinkedList<>();
+
+    /**
+     * true once released: the repaint listeners are handed back to the cache if the grid is drawn again
+     */
+    private boolean released = false;
+
+    /**
+     * when true expensive encodings are evaluated (still in parallel) before drawing rather than in the background;
+     * for drawing offscreen, where there is no later repaint to wait for
+     */
+    private boolean synchronous = false;
+
+    /**
+     * runs the evaluation of expensive encodings between steps, so the model can't change while it is read; without
+     * it they are evaluated where they are drawn, like the others
+     */
+    private ModelCommandQueue commands = null;
+
     /**
      * the specie currently selected, no selection means depth
      */
@@ -70,6 +126,14 @@ public class ColorfulGrid extends FastObjectGridPortrayal2D {
     private final MersenneTwisterFast random;
 
     public ColorfulGrid(MersenneTwisterFast random) {
+        this(random, new LayerCache());
+    }
+
+    /**
+     * @param cache where to keep the values of the encodings; grids sharing it evaluate shared encodings only once
+     */
+    public ColorfulGrid(MersenneTwisterFast random, LayerCache cache) {
+        this.cache = cache;
         encodings = new HashMap<>();
         this.random = random;
         // add the default color map showing depth
@@ -103,11 +167,11 @@ public class ColorfulGrid extends FastObjectGridPortrayal2D {
      */
     public void initializeGrid(GlobalBiology biology, List<SeaTile> seaTiles) {
 
-        double max = BIOMASS_TRANSFORM.apply(MAX_BIOMASS);
+        double max = BIOMASS_TRANSFORM.applyAsDouble(MAX_BIOMASS);
         for (Species species : biology.getSpecies()) {
             max = Math.max(
                     max,
-                    BIOMASS_TRANSFORM.apply(seaTiles.stream()
+                    BIOMASS_TRANSFORM.applyAsDouble(seaTiles.stream()
                             .mapToDouble(value -> value.getBiomass(species))
                             .filter(Double::isFinite)
                             .max()
@@ -120,27 +184,11 @@ public class ColorfulGrid extends FastObjectGridPortrayal2D {
             encodings.put(
                     species.getName(),
                     new SelfAdjustingColorEncoding(
-                            new SimpleColorMap(0, max, Color.WHITE, color) {
-
-                                @Override
-                                public boolean validLevel(double value) {
-                                    return true;
-                                }
-
-                                @Override
-                                public int getRGB(double level) {
-                                    return getColor(level).getRGB();
-                                }
-
-                                @Override
-                                public Color getColor(double level) {
-                                    if (Double.isFinite(level)) return super.getColor(level);
-                                    else return Color.BLACK;
-                                }
-                            },
+                            // non-finite biomass shows up black
+                            new GradientColorMap(0, max, Color.WHITE, color, Color.BLACK),
                             seaTile -> seaTile.isLand()
                                     ? Double.NaN
-                                    : BIOMASS_TRANSFORM.apply(seaTile.getBiomass(species)),
+                                    : BIOMASS_TRANSFORM.applyAsDouble(seaTile.getBiomass(species)),
                             false,
                             max,
                             0));
@@ -155,12 +203,158 @@ public class ColorfulGrid extends FastObjectGridPortrayal2D {
      */
     public double encodeSeaTile(SeaTile tile) {
 
-        return selected.getEncoding().apply(tile);
+        return selected.getEncoding().encode(tile);
     }
 
     @Override
     public double doubleValue(Object obj) {
-        return encodeSeaTile((SeaTile) obj);
+        SeaTile tile = (SeaTile) obj;
+        if (selectedRaster == null || !selectedRaster.isFilled()) return encodeSeaTile(tile);
+        return selectedRaster.get(tile.getGridX(), tile.getGridY());
+    }
+
+    @Override
+    public void draw(Object object, Graphics2D graphics, DrawInfo2D info) {
+        refreshSelectedRaster();
+        if (selectedRaster == null) {
+            super.draw(object, graphics, info);
+            return;
+        }
+        if (!selectedRaster.isFilled()) {
+            // still evaluating in the background: keep showing whatever was there before
+            if (lastDrawn != null) lastDrawn.drawOnto(graphics, info.draw);
+            return;
+        }
+        selected.prepareFrame();
+        final RetainedGridImage image = imageFor(selected, selectedRaster);
+        // repaints the cells that changed since the last frame, everything if the colors did
+        image.refresh(selectedRaster, getMap(), selected.getMapVersion());
+        image.drawOnto(graphics, info.draw);
+        lastDrawn = image;
+    }
+
+    /**
+     * immutable encodings get an image of their own, the others share the back-buffer
+     */
+    private RetainedGridImage imageFor(ColorEncoding encoding, EncodingRaster raster) {
+        if (encoding.isImmutable())
+            return prerendered.computeIfAbsent(
+                    encoding, key -> new RetainedGridImage(raster.getWidth(), raster.getHeight(), true));
+
+        if (backBuffer == null
+                || backBuffer.getWidth() != raster.getWidth()
+                || backBuffer.getHeight() != raster.getHeight())
+            backBuffer = new RetainedGridImage(raster.getWidth(), raster.getHeight());
+        return backBuffer;
+    }
+
+    @Override
+    public void setField(Object field) {
+        super.setField(field);
+        // cached values are only valid for the grid they were computed on
+        cache.retain(this, Collections.emptySet());
+        selectedRaster = null;
+        backBuffer = null;
+        prerendered.clear();
+        lastDrawn = null;
+    }
+
+    /**
+     * tells the grid the model has stepped, so that mutable encodings will be re-evaluated on the next repaint
+     *
+     * @param step the current model step
+     */
+    public void updateStep(long step) {
+        currentStep = step;
+    }
+
+    /**
+     * forces every encoding, immutable ones included, to be re-evaluated the next time it is drawn.
+     * Useful when the GUI changes the map (e.g. new MPAs)
+     */
+    public void invalidate() {
+        final ObjectGrid2D grid = (ObjectGrid2D) getField();
+        // whatever is being evaluated right now is stale already
+        if (grid != null) cache.invalidate(grid);
+    }
+
+    /**
+     * re-evaluates only a rectangle of cells (both corners included) of every encoding already drawn, so that the
+     * next repaint recolors just those cells. Expensive encodings, and the ones being evaluated, are invalidated
+     * whole instead
+     */
+    public void invalidate(int minX, int minY, int maxX, int maxY) {
+        final ObjectGrid2D grid = (ObjectGrid2D) getField();
+        if (grid == null) return;
+        for (Map.Entry<ColorEncoding, EncodingRaster> entry : cache.rastersOf(grid).entrySet()) {
+            final ColorEncoding encoding = entry.getKey();
+            final EncodingRaster raster = entry.getValue();
+            if (encoding.isExpensive() || cache.getEvaluation(grid, encoding) != null) {
+                raster.invalidate();
+                cache.setEvaluation(grid, encoding, null);
+            } else if (raster.isFilled()) raster.fill(grid, encoding.getEncoding(), minX, minY, maxX, maxY);
+        }
+    }
+
+    /**
+     * makes sure the raster of the selected encoding holds the values of the current step,
+     * evaluating the encoding once for every tile if it doesn't. Expensive encodings are evaluated in the
+     * background instead, and the raster keeps its old values until they are done
+     */
+    private void refreshSelectedRaster() {
+        final ObjectGrid2D grid = (ObjectGrid2D) getField();
+        if (grid == null || selected == null) return;
+
+        if (released) {
+            // drawn again after all (MASON only hides closed windows)
+            released = false;
+            for (Runnable listener : repaintListeners) cache.addRepaintListener(this, listener);
+        }
+        EncodingRaster raster = cache.get(this, grid, selected);
+        final long step = currentStep;
+        if (selected.isImmutable() ? !raster.isFilled() : !raster.isFilledAt(step)) {
+            if (!selected.isExpensive()) {
+                raster.fill(grid, selected.getEncoding(), step);
+                selected.observe(raster.getValues());
+            } else if (synchronous || commands == null) {
+                raster.set(
+                        ParallelEncodingEvaluator.evaluate(grid, selected.getEncoding(), selected.getProgress())
+                                .join(),
+                        step);
+                selected.observe(raster.getValues());
+            } else if (cache.getEvaluation(grid, selected) == null) {
+                evaluateInBackground(grid, selected, raster, step);
+            }
+        }
+        selectedRaster = raster;
+    }
+
+    /**
+     * evaluate the encoding in parallel, off the EDT, as a model command: the model thread waits between two steps
+     * while the workers read the model, so nothing they read changes under them. The raster is filled (and the
+     * displays repainted) on the EDT once the values are ready, unless in the meantime the raster was invalidated or
+     * discarded
+     */
+    private void evaluateInBackground(ObjectGrid2D grid, ColorEncoding encoding, EncodingRaster raster, long step) {
+        final CompletableFuture<double[]> evaluation = commands.call(model -> {
+            final double[] values = ParallelEncodingEvaluator.evaluate(
+                            grid, encoding.getEncoding(), encoding.getProgress())
+                    .join();
+            encoding.observe(values);
+            return values;
+        });
+        cache.setEvaluation(grid, encoding, evaluation);
+        // completes on the EDT
+        evaluation.whenComplete((values, failure) -> {
+            if (!cache.finishEvaluation(grid, encoding, evaluation)) return;
+            if (failure != null) {
+                failure.printStackTrace();
+                return;
+            }
+            raster.set(values, step);
+            // every display sharing the raster gets to show it
+            cache.repaintAll();
+        });
     }
 
     /**
@@ -175,6 +369,11 @@ public class ColorfulGrid extends FastObjectGridPortrayal2D {
         assert selected != null;
         this.setMap(selected.getMap());
         this.setImmutableField(selected.isImmutable());
+        // forget about encodings that have been removed from the map in the meantime
+        cache.retain(this, encodings.values());
+        prerendered.keySet().retainAll(encodings.values());
+        selectedRaster = null;
+        refreshSelectedRaster();
     }
 
     public void addEnconding(String encodingName, ColorEncoding encoding) {
@@ -184,7 +383,9 @@ public class ColorfulGrid extends FastObjectGridPortrayal2D {
     }
 
     public void removeEncoding(String encodingName) {
-        encodings.remove(encodingName);
+        ColorEncoding removed = encodings.remove(encodingName);
+        cache.retain(this, encodings.values());
+        prerendered.remove(removed);
     }
 
     @Override
@@ -207,6 +408,10 @@ public class ColorfulGrid extends FastObjectGridPortrayal2D {
 
     public ColorEncoding put(String key, ColorEncoding value) {
         ColorEncoding put = encodings.put(key, value);
+        if (put != null) {
+            cache.retain(this, encodings.values());
+            prerendered.remove(put);
+        }
         for (ColorfulGridSwitcher listener : listeners) {
             listener.gridChanged();
         }
@@ -246,6 +451,10 @@ public class ColorfulGrid extends FastObjectGridPortrayal2D {
      */
     public ColorEncoding remove(Object key) {
         ColorEncoding remove = encodings.remove(key);
+        if (remove != null) {
+            cache.retain(this, encodings.values());
+            prerendered.remove(remove);
+        }
         for (ColorfulGridSwitcher listener : listeners) {
             listener.gridChanged();
         }
@@ -261,6 +470,8 @@ public class ColorfulGrid extends FastObjectGridPortrayal2D {
      */
     public void clear() {
         encodings.clear();
+        cache.retain(this, encodings.values());
+        prerendered.clear();
         for (ColorfulGridSwitcher listener : listeners) {
             listener.gridChanged();
         }
@@ -273,4 +484,44 @@ public class ColorfulGrid extends FastObjectGridPortrayal2D {
     public void addListener(ColorfulGridSwitcher switcher) {
         listeners.add(switcher);
     }
+
+    public ModelCommandQueue getCommands() {
+        return commands;
+    }
+
+    public void setCommands(ModelCommandQueue commands) {
+        this.commands = commands;
+    }
+
+    public boolean isSynchronous() {
+        return synchronous;
+    }
+
+    public void setSynchronous(boolean synchronous) {
+        this.synchronous = synchronous;
+    }
+
+    /**
+     * @param repaint called (on the EDT) whenever values evaluated in the background are ready to be drawn
+     */
+    public void addRepaintListener(Runnable repaint) {
+        repaintListeners.add(repaint);
+        cache.addRepaintListener(this, repaint);
+    }
+
+    /**
+     * the grid won't be drawn any more (its window closed): the cached values only it was using are dropped
+     */
+    public void release() {
+        cache.release(this);
+        released = true;
+        backBuffer = null;
+        prerendered.clear();
+        lastDrawn = null;
+        selectedRaster = null;
+    }
+
+    public LayerCache getCache() {
+        return cache;
+    }
 }
@@ -57,12 +57,10 @@ public class ColorfulGridSwitcher extends JComboBox<String> implements ActionLis
 
         addActionListener(this);
 
+        // the grid keeps its own back-buffer, so scrolling only needs to blit it again
         toRefresh.display.getViewport().addChangeListener(e -> {
-            boolean isImmutable = toModify.isImmutableField();
-            toModify.setImmutableField(false);
             toRefresh.revalidate();
             toRefresh.repaint();
-            toModify.setImmutableField(isImmutable);
         });
     }
 
@@ -19,9 +19,6 @@
 package uk.ac.ox.poseidon.gui.drawing;
 
 import com.vividsolutions.jts.geom.Point;
-import java.awt.geom.AffineTransform;
-import java.awt.geom.NoninvertibleTransformException;
-import java.awt.geom.Point2D;
 import sim.display.Display2D;
 import sim.util.Int2D;
 import uk.ac.ox.oxfish.geography.NauticalMap;
@@ -47,9 +44,15 @@ public class CoordinateTransformer {
      */
     private final NauticalMap map;
 
+    /**
+     * turns pixels into cells without rebuilding the transform every click
+     */
+    private final Viewport viewport;
+
     public CoordinateTransformer(Display2D mapDisplay, NauticalMap map) {
         this.display = mapDisplay;
         this.map = map;
+        this.viewport = new Viewport(mapDisplay, map.getWidth(), map.getHeight());
     }
 
     /**
@@ -71,29 +74,14 @@ public class CoordinateTransformer {
      * get the grid cell location touched
      */
     public Int2D guiToGridPosition(double guiX, double guiY) {
-        // create the transformer
-        AffineTransform transform = new AffineTransform();
-        transform.translate(display.getOffset().getX(), display.getOffset().getY());
-        transform.scale(display.getScale(), display.getScale());
-        // invert it, which is easy.
-        try {
-            transform.invert();
-        } catch (NoninvertibleTransformException e) {
-            e.printStackTrace();
-            System.err.println("failure to transform");
-        }
-
-        // get proper X and y
-        final Point2D transformed = transform.transform(new Point2D.Double(guiX, guiY), null);
-
-        // now get the ratios of widths/heights; notice that we need to grab the inside display because
-        // display2d can be resized at any point
-        double widthRatio = display.insideDisplay.width / map.getWidth();
-        double heightRatio = display.insideDisplay.height / map.getHeight();
-
-        int xCell = (int) (transformed.getX() / widthRatio);
-        int yCell = (int) (transformed.getY() / heightRatio);
-        return new Int2D(xCell, yCell);
+        return viewport.guiToGridPosition(guiX, guiY);
+    }
+
+    /**
+     * the cached pixel/grid transforms this transformer uses
+     */
+    public Viewport getViewport() {
+        return viewport;
     }
 
     /**
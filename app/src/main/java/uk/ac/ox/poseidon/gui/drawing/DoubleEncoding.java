@@ -0,0 +1,35 @@
+/*
+ * POSEIDON, an agent-based model of fisheries
+ * Copyright (c) 2023, CoHESyS Lab, cohesys.lab@gmail.com.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.ox.poseidon.gui.drawing;
+
+import uk.ac.ox.oxfish.geography.SeaTile;
+
+/**
+ * The primitive version of a {@code Function<SeaTile, Double>}: turns a seatile into the double the color map draws,
+ * without boxing a Double for every cell of every frame.
+ */
+@FunctionalInterface
+public interface DoubleEncoding {
+
+    /**
+     * @param tile the seatile to encode
+     * @return the value to give the color map (NaN when there is nothing to draw)
+     */
+    double encode(SeaTile tile);
+}
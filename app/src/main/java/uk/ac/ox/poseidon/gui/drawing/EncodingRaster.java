@@ -0,0 +1,150 @@
+/*
+ * POSEIDON, an agent-based model of fisheries
+ * Copyright (c) 2023, CoHESyS Lab, cohesys.lab@gmail.com.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.ox.poseidon.gui.drawing;
+
+import sim.field.grid.ObjectGrid2D;
+import uk.ac.ox.oxfish.geography.SeaTile;
+
+/**
+ * A primitive copy of what an encoding returns for each cell of the map. It is filled at most once per model step
+ * so that repainting reads doubles from an array rather than re-querying the model cell by cell.
+ */
+public class EncodingRaster {
+
+    /**
+     * the step value of a raster that has never been filled (or has been invalidated)
+     */
+    public static final long NEVER_FILLED = Long.MIN_VALUE;
+
+    private final int width;
+
+    private final int height;
+
+    /**
+     * column-major, so that x * height + y is the index of cell (x,y); the same order MASON grids use
+     */
+    private final double[] values;
+
+    /**
+     * the model step at which the raster was last filled
+     */
+    private long filledAt = NEVER_FILLED;
+
+    /**
+     * increases every time the raster is (re)filled; lets whoever draws it know its values may have changed
+     */
+    private long version = 0;
+
+    public EncodingRaster(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.values = new double[width * height];
+    }
+
+    /**
+     * evaluate the encoding once for every tile of the grid
+     *
+     * @param tiles    the grid of seatiles
+     * @param encoding the encoding to store
+     * @param step     the model step the values refer to
+     */
+    public void fill(ObjectGrid2D tiles, DoubleEncoding encoding, long step) {
+        final Object[][] field = tiles.field;
+        for (int x = 0; x < width; x++) {
+            final Object[] column = field[x];
+            final int offset = x * height;
+            for (int y = 0; y < height; y++) values[offset + y] = encoding.encode((SeaTile) column[y]);
+        }
+        filledAt = step;
+        version++;
+    }
+
+    /**
+     * re-evaluate the encoding only within a rectangle of cells (both corners included), leaving the step the
+     * raster refers to untouched. Used when the GUI changes a small part of the map
+     */
+    public void fill(ObjectGrid2D tiles, DoubleEncoding encoding, int minX, int minY, int maxX, int maxY) {
+        final Object[][] field = tiles.field;
+        for (int x = Math.max(minX, 0); x <= Math.min(maxX, width - 1); x++) {
+            final Object[] column = field[x];
+            final int offset = x * height;
+            for (int y = Math.max(minY, 0); y <= Math.min(maxY, height - 1); y++)
+                values[offset + y] = encoding.encode((SeaTile) column[y]);
+        }
+        version++;
+    }
+
+    /**
+     * store values computed elsewhere (see {@link ParallelEncodingEvaluator})
+     *
+     * @param computed the values, column-major
+     * @param step     the model step the values refer to
+     */
+    public void set(double[] computed, long step) {
+        assert computed.length == values.length;
+        System.arraycopy(computed, 0, values, 0, values.length);
+        filledAt = step;
+        version++;
+    }
+
+    public double get(int x, int y) {
+        return values[x * height + y];
+    }
+
+    /**
+     * @return true if the raster holds the values of this step
+     */
+    public boolean isFilledAt(long step) {
+        return filledAt != NEVER_FILLED && filledAt == step;
+    }
+
+    public boolean isFilled() {
+        return filledAt != NEVER_FILLED;
+    }
+
+    /**
+     * forces the next request to re-evaluate the encoding
+     */
+    public void invalidate() {
+        filledAt = NEVER_FILLED;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public long getFilledAt() {
+        return filledAt;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * direct access to the cached values, column-major
+     */
+    public double[] getValues() {
+        return values;
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * POSEIDON, an agent-based model of fisheries
+ * Copyright (c) 2023, CoHESyS Lab, cohesys.lab@gmail.com.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.ox.poseidon.gui.drawing;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * How far a background evaluation of the whole map has gone, for progress bars. Written by the evaluating threads,
+ * read by whoever is curious.
+ */
+public class EvaluationProgress {
+
+    private final AtomicLong evaluated = new AtomicLong();
+
+    private volatile long cells = 0;
+
+    /**
+     * a new evaluation of this many cells starts
+     */
+    public void start(long cells) {
+        evaluated.set(0);
+        this.cells = cells;
+    }
+
+    public void advance(long evaluatedCells) {
+        evaluated.addAndGet(evaluatedCells);
+    }
+
+    /**
+     * @return between 0 and 1; 1 also when nothing was ever evaluated
+     */
+    public double getFraction() {
+        final long total = cells;
+        return total == 0 ? 1 : Math.min(1, evaluated.get() / (double) total);
+    }
+
+    public boolean isDone() {
+        return evaluated.get() >= cells;
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * POSEIDON, an agent-based model of fisheries
+ * Copyright (c) 2023, CoHESyS Lab, cohesys.lab@gmail.com.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.ox.poseidon.gui.drawing;
+
+import com.google.common.base.Preconditions;
+import java.util.Arrays;
+import sim.engine.SimState;
+import sim.engine.Steppable;
+import sim.field.continuous.Continuous2D;
+import sim.util.Bag;
+import sim.util.Double2D;
+
+/**
+ * A grid of buckets over the FAD field, rebuilt every step, so that drawing and picking only ever look at the FADs
+ * in the buckets they touch. FADs are sorted by bucket (a counting sort, two passes) into flat arrays; each rebuild
+ * publishes a new {@link Snapshot} that the EDT can read while the model moves on.
+ */
+public class FadIndex implements Steppable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Continuous2D field;
+
+    /**
+     * side of a bucket, in field units
+     */
+    private final double bucketSize;
+
+    private transient volatile Snapshot snapshot;
+
+    public FadIndex(Continuous2D field, double bucketSize) {
+        Preconditions.checkArgument(bucketSize > 0);
+        this.field = field;
+        this.bucketSize = bucketSize;
+        rebuild();
+    }
+
+    @Override
+    public void step(SimState simState) {
+        rebuild();
+    }
+
+    public void rebuild() {
+        final int columns = Math.max(1, (int) Math.ceil(field.getWidth() / bucketSize));
+        final int rows = Math.max(1, (int) Math.ceil(field.getHeight() / bucketSize));
+        final Bag all = field.getAllObjects();
+        final int size = all.numObjs;
+
+        final int[] bucketOf = new int[size];
+        final double[] xs = new double[size];
+        final double[] ys = new double[size];
+        final int[] start = new int[columns * rows + 1];
+        for (int i = 0; i < size; i++) {
+            final Double2D location = field.getObjectLocation(all.objs[i]);
+            xs[i] = location.x;
+            ys[i] = location.y;
+            final int column = clamp((int) (location.x / bucketSize), columns);
+            final int row = clamp((int) (location.y / bucketSize), rows);
+            bucketOf[i] = column * rows + row;
+            start[bucketOf[i] + 1]++;
+        }
+        for (int bucket = 0; bucket < columns * rows; bucket++) start[bucket + 1] += start[bucket];
+
+        final Object[] sortedFads = new Object[size];
+        final double[] sortedXs = new double[size];
+        final double[] sortedYs = new double[size];
+        final int[] next = Arrays.copyOf(start, start.length - 1);
+        for (int i = 0; i < size; i++) {
+            final int position = next[bucketOf[i]]++;
+            sortedFads[position] = all.objs[i];
+            sortedXs[position] = xs[i];
+            sortedYs[position] = ys[i];
+        }
+        snapshot = new Snapshot(bucketSize, columns, rows, start, sortedFads, sortedXs, sortedYs);
+    }
+
+    private static int clamp(int index, int size) {
+        return index < 0 ? 0 : index >= size ? size - 1 : index;
+    }
+
+    public Snapshot getSnapshot() {
+        return snapshot;
+    }
+
+    public Continuous2D getField() {
+        return field;
+    }
+
+    /**
+     * the FADs as they were at the end of a step, sorted by bucket (column-major)
+     */
+    public static class Snapshot {
+
+        private final double bucketSize;
+
+        private final int columns;
+
+        private final int rows;
+
+        /**
+         * the FADs of bucket b are at positions [start[b], start[b+1])
+         */
+        private final int[] start;
+
+        private final Object[] fads;
+
+        private final double[] xs;
+
+        private final double[] ys;
+
+        private Snapshot(
+                double bucketSize, int columns, int rows, int[] start, Object[] fads, double[] xs, double[] ys) {
+            this.bucketSize = bucketSize;
+            this.columns = columns;
+            this.rows = rows;
+            this.start = start;
+            this.fads = fads;
+            this.xs = xs;
+            this.ys = ys;
+        }
+
+        /**
+         * the column of the bucket containing x (clamped to the field)
+         */
+        public int column(double x) {
+            return clamp((int) Math.floor(x / bucketSize), columns);
+        }
+
+        public int row(double y) {
+            return clamp((int) Math.floor(y / bucketSize), rows);
+        }
+
+        /**
+         * first position of the bucket's FADs
+         */
+        public int start(int column, int row) {
+            return start[column * this.rows + row];
+        }
+
+        /**
+         * one past the last position of the bucket's FADs
+         */
+        public int end(int column, int row) {
+            return start[column * this.rows + row + 1];
+        }
+
+        public Object getFad(int position) {
+            return fads[position];
+        }
+
+        public double getX(int position) {
+            return xs[position];
+        }
+
+        public double getY(int position) {
+            return ys[position];
+        }
+
+        public double getBucketSize() {
+            return bucketSize;
+        }
+
+        public int size() {
+            return fads.length;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * POSEIDON, an agent-based model of fisheries
+ * Copyright (c) 2023, CoHESyS Lab, cohesys.lab@gmail.com.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.ox.poseidon.gui.drawing;
+
+import java.awt.*;
+import java.awt.geom.Ellipse2D;
+import sim.portrayal.DrawInfo2D;
+import sim.portrayal.LocationWrapper;
+import sim.portrayal.continuous.ContinuousPortrayal2D;
+import sim.util.Bag;
+import sim.util.Double2D;
+
+/**
+ * Draws and picks FADs through a {@link FadIndex}: only the buckets overlapping the clip (or the click) are looked
+ * at. Zoomed in, each FAD is an oval as OvalPortrayal2D would draw it; zoomed out, when a bucket is only a few
+ * pixels wide, each bucket is a single dot growing with the number of FADs in it.
+ * Inspection still goes through the portrayal set for the FADs.
+ */
+public class FadLayerPortrayal extends ContinuousPortrayal2D {
+
+    /**
+     * buckets narrower than this many pixels are drawn as one dot
+     */
+    private static final double AGGREGATE_BELOW_PIXELS = 8;
+
+    private final FadIndex index;
+
+    private final Color color;
+
+    /**
+     * diameter of a FAD, relative to a unit of the field (as in OvalPortrayal2D)
+     */
+    private final double scale;
+
+    public FadLayerPortrayal(FadIndex index, Color color, double scale) {
+        this.index = index;
+        this.color = color;
+        this.scale = scale;
+        setField(index.getField());
+    }
+
+    @Override
+    protected void hitOrDraw(Graphics2D graphics, DrawInfo2D info, Bag putInHere) {
+        final FadIndex.Snapshot snapshot = index.getSnapshot();
+        if (snapshot == null) return;
+
+        final double xScale = info.draw.width / index.getField().getWidth();
+        final double yScale = info.draw.height / index.getField().getHeight();
+        final double radiusX = scale * xScale / 2;
+        final double radiusY = scale * yScale / 2;
+        // the buckets touching the clip, plus the FADs hanging over its edge
+        final int firstColumn = snapshot.column((info.clip.x - radiusX - info.draw.x) / xScale);
+        final int lastColumn = snapshot.column((info.clip.x + info.clip.width + radiusX - info.draw.x) / xScale);
+        final int firstRow = snapshot.row((info.clip.y - radiusY - info.draw.y) / yScale);
+        final int lastRow = snapshot.row((info.clip.y + info.clip.height + radiusY - info.draw.y) / yScale);
+
+        if (graphics == null) {
+            hit(snapshot, info, putInHere, xScale, yScale, firstColumn, lastColumn, firstRow, lastRow);
+            return;
+        }
+
+        final Color oldColor = graphics.getColor();
+        graphics.setColor(color);
+        final double bucketPixels = snapshot.getBucketSize() * Math.min(xScale, yScale);
+        for (int column = firstColumn; column <= lastColumn; column++) {
+            for (int row = firstRow; row <= lastRow; row++) {
+                final int start = snapshot.start(column, row);
+                final int end = snapshot.end(column, row);
+                if (start == end) continue;
+                if (bucketPixels < AGGREGATE_BELOW_PIXELS) {
+                    // one dot per bucket, its area growing with the FADs in it, never wider than the bucket
+                    final int diameter =
+                            (int) Math.max(2, Math.min(bucketPixels, Math.sqrt(end - start) * 2 * radiusX));
+                    final double centerX = info.draw.x + (column + .5) * snapshot.getBucketSize() * xScale;
+                    final double centerY = info.draw.y + (row + .5) * snapshot.getBucketSize() * yScale;
+                    graphics.fillOval(
+                            (int) (centerX - diameter / 2.0), (int) (centerY - diameter / 2.0), diameter, diameter);
+                } else {
+                    final int width = Math.max(1, (int) (2 * radiusX));
+                    final int height = Math.max(1, (int) (2 * radiusY));
+                    for (int fad = start; fad < end; fad++) {
+                        final double x = info.draw.x + snapshot.getX(fad) * xScale;
+                        final double y = info.draw.y + snapshot.getY(fad) * yScale;
+                        graphics.fillOval((int) (x - radiusX), (int) (y - radiusY), width, height);
+                    }
+                }
+            }
+        }
+        graphics.setColor(oldColor);
+    }
+
+    /**
+     * the FADs whose oval intersects the clip (which, when picking, is the area clicked)
+     */
+    private void hit(
+            FadIndex.Snapshot snapshot,
+            DrawInfo2D info,
+            Bag putInHere,
+            double xScale,
+            double yScale,
+            int firstColumn,
+            int lastColumn,
+            int firstRow,
+            int lastRow) {
+        for (int column = firstColumn; column <= lastColumn; column++) {
+            for (int row = firstRow; row <= lastRow; row++) {
+                for (int fad = snapshot.start(column, row); fad < snapshot.end(column, row); fad++) {
+                    final double x = info.draw.x + snapshot.getX(fad) * xScale;
+                    final double y = info.draw.y + snapshot.getY(fad) * yScale;
+                    final Ellipse2D.Double oval = new Ellipse2D.Double(
+                            x - scale * xScale / 2, y - scale * yScale / 2, scale * xScale, scale * yScale);
+                    if (oval.intersects(info.clip))
+                        putInHere.add(new LocationWrapper(
+                                snapshot.getFad(fad), new Double2D(snapshot.getX(fad), snapshot.getY(fad)), this));
+                }
+            }
+        }
+    }
+}
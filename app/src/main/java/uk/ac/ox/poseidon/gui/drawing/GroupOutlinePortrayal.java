@@ -0,0 +1,83 @@
+/*
+ * POSEIDON, an agent-based model of fisheries
+ * Copyright (c) 2023, CoHESyS Lab, cohesys.lab@gmail.com.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.ox.poseidon.gui.drawing;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import sim.portrayal.DrawInfo2D;
+import sim.portrayal.FieldPortrayal2D;
+import sim.portrayal.Portrayal;
+import sim.portrayal.SimplePortrayal2D;
+
+/**
+ * Draws only the boundaries between the groups of a {@link GroupRaster}, over whatever the map shows below. The
+ * boundaries are computed once; each frame just scales them to the display. Draws nothing until given a raster.
+ */
+public class GroupOutlinePortrayal extends FieldPortrayal2D {
+
+    private Color color = Color.BLACK;
+
+    private float lineWidth = 1;
+
+    /**
+     * outlines can't be picked or inspected
+     */
+    private final SimplePortrayal2D defaultPortrayal = new SimplePortrayal2D();
+
+    @Override
+    public void draw(Object object, Graphics2D graphics, DrawInfo2D info) {
+        final GroupRaster groups = (GroupRaster) getField();
+        if (groups == null || graphics == null) return;
+
+        final AffineTransform toScreen = new AffineTransform();
+        toScreen.translate(info.draw.x, info.draw.y);
+        toScreen.scale(info.draw.width / groups.getWidth(), info.draw.height / groups.getHeight());
+        // transformed before stroking, so lines stay as thin as asked however much we zoom
+        final Shape outline = toScreen.createTransformedShape(groups.getOutline());
+
+        final Color oldColor = graphics.getColor();
+        final Stroke oldStroke = graphics.getStroke();
+        graphics.setColor(color);
+        graphics.setStroke(new BasicStroke(lineWidth));
+        graphics.draw(outline);
+        graphics.setStroke(oldStroke);
+        graphics.setColor(oldColor);
+    }
+
+    @Override
+    public Portrayal getDefaultPortrayal() {
+        return defaultPortrayal;
+    }
+
+    public Color getColor() {
+        return color;
+    }
+
+    public void setColor(Color color) {
+        this.color = color;
+    }
+
+    public float getLineWidth() {
+        return lineWidth;
+    }
+
+    public void setLineWidth(float lineWidth) {
+        this.lineWidth = lineWidth;
+    }
+}
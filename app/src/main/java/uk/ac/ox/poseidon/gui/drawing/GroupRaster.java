@@ -0,0 +1,133 @@
+/*
+ * POSEIDON, an agent-based model of fisheries
+ * Copyright (c) 2023, CoHESyS Lab, cohesys.lab@gmail.com.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.ox.poseidon.gui.drawing;
+
+import java.awt.geom.Path2D;
+import java.util.function.IntBinaryOperator;
+import uk.ac.ox.oxfish.geography.NauticalMap;
+import uk.ac.ox.oxfish.geography.discretization.MapDiscretization;
+
+/**
+ * The group of each cell of a map discretization, looked up once and kept in an int array (discretizations don't
+ * change while displayed). Also knows the boundaries between groups, computed the first time they are asked for.
+ */
+public class GroupRaster {
+
+    /**
+     * the group of cells that belong to none
+     */
+    public static final int NO_GROUP = -1;
+
+    private final int width;
+
+    private final int height;
+
+    /**
+     * column-major, like {@link EncodingRaster}
+     */
+    private final int[] groups;
+
+    /**
+     * the boundaries between groups, in cell units (cell (x,y) spans x to x+1 and y to y+1); built lazily
+     */
+    private Path2D.Float outline;
+
+    private int boundaryEdges = -1;
+
+    /**
+     * @param groupAt the group of cell (x,y)
+     */
+    public GroupRaster(int width, int height, IntBinaryOperator groupAt) {
+        this.width = width;
+        this.height = height;
+        this.groups = new int[width * height];
+        for (int x = 0; x < width; x++)
+            for (int y = 0; y < height; y++) groups[x * height + y] = groupAt.applyAsInt(x, y);
+    }
+
+    public static GroupRaster of(MapDiscretization discretization, NauticalMap map) {
+        return new GroupRaster(map.getWidth(), map.getHeight(), (x, y) -> {
+            final Integer group = discretization.getGroup(map.getSeaTile(x, y));
+            return group == null ? NO_GROUP : group;
+        });
+    }
+
+    public int get(int x, int y) {
+        return groups[x * height + y];
+    }
+
+    /**
+     * the edges between cells of different groups, consecutive edges along the same line merged into one segment
+     */
+    public synchronized Path2D.Float getOutline() {
+        if (outline == null) buildOutline();
+        return outline;
+    }
+
+    /**
+     * @return how many cell edges separate different groups
+     */
+    public synchronized int getBoundaryEdges() {
+        if (outline == null) buildOutline();
+        return boundaryEdges;
+    }
+
+    private void buildOutline() {
+        outline = new Path2D.Float();
+        boundaryEdges = 0;
+        // vertical edges: between (x,y) and (x+1,y), runs along y
+        for (int x = 0; x < width - 1; x++) {
+            int runStart = -1;
+            for (int y = 0; y <= height; y++) {
+                final boolean edge = y < height && get(x, y) != get(x + 1, y);
+                if (edge) {
+                    boundaryEdges++;
+                    if (runStart < 0) runStart = y;
+                } else if (runStart >= 0) {
+                    outline.moveTo(x + 1, runStart);
+                    outline.lineTo(x + 1, y);
+                    runStart = -1;
+                }
+            }
+        }
+        // horizontal edges: between (x,y) and (x,y+1), runs along x
+        for (int y = 0; y < height - 1; y++) {
+            int runStart = -1;
+            for (int x = 0; x <= width; x++) {
+                final boolean edge = x < width && get(x, y) != get(x, y + 1);
+                if (edge) {
+                    boundaryEdges++;
+                    if (runStart < 0) runStart = x;
+                } else if (runStart >= 0) {
+                    outline.moveTo(runStart, y + 1);
+                    outline.lineTo(x, y + 1);
+                    runStart = -1;
+                }
+            }
+        }
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+}
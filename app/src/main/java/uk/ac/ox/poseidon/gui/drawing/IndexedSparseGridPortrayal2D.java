@@ -0,0 +1,93 @@
+/*
+ * POSEIDON, an agent-based model of fisheries
+ * Copyright (c) 2023, CoHESyS Lab, cohesys.lab@gmail.com.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.ox.poseidon.gui.drawing;
+
+import java.awt.*;
+import java.awt.geom.Rectangle2D;
+import sim.field.grid.SparseGrid2D;
+import sim.portrayal.DrawInfo2D;
+import sim.portrayal.LocationWrapper;
+import sim.portrayal.Portrayal;
+import sim.portrayal.SimplePortrayal2D;
+import sim.portrayal.grid.SparseGridPortrayal2D;
+import sim.util.Bag;
+import sim.util.Int2D;
+
+/**
+ * A sparse grid portrayal that, when picking (clicks, hover, selection), asks the grid only for the objects in the
+ * cells under the area hit rather than walking every object of the layer. The sparse grid already indexes its
+ * objects by location, so a click costs the same with ten boats or ten thousand.
+ */
+public class IndexedSparseGridPortrayal2D extends SparseGridPortrayal2D {
+
+    @Override
+    protected void hitOrDraw(Graphics2D graphics, DrawInfo2D info, Bag putInHere) {
+        final SparseGrid2D grid = (SparseGrid2D) getField();
+        if (graphics != null || grid == null) {
+            super.hitOrDraw(graphics, info, putInHere);
+            return;
+        }
+
+        final double xScale = info.draw.width / grid.getWidth();
+        final double yScale = info.draw.height / grid.getHeight();
+        // objects are drawn around the center of their cell and may spill onto the neighbors
+        final int minX = Math.max(0, (int) Math.floor((info.clip.x - info.draw.x) / xScale) - 1);
+        final int maxX = Math.min(
+                grid.getWidth() - 1, (int) Math.floor((info.clip.x + info.clip.width - info.draw.x) / xScale) + 1);
+        final int minY = Math.max(0, (int) Math.floor((info.clip.y - info.draw.y) / yScale) - 1);
+        final int maxY = Math.min(
+                grid.getHeight() - 1, (int) Math.floor((info.clip.y + info.clip.height - info.draw.y) / yScale) + 1);
+        // a large enough area (a zoomed-out rubber band) is faster done object by object
+        if ((long) (maxX - minX + 1) * (maxY - minY + 1) > grid.getAllObjects().numObjs) {
+            super.hitOrDraw(graphics, info, putInHere);
+            return;
+        }
+
+        for (int x = minX; x <= maxX; x++) {
+            for (int y = minY; y <= maxY; y++) {
+                final Bag here = grid.getObjectsAtLocation(x, y);
+                if (here == null) continue;
+                final Int2D location = new Int2D(x, y);
+                final DrawInfo2D cellInfo = new DrawInfo2D(
+                        info.gui,
+                        this,
+                        new Rectangle2D.Double(
+                                Math.floor(info.draw.x + xScale * x) + xScale / 2,
+                                Math.floor(info.draw.y + yScale * y) + yScale / 2,
+                                xScale,
+                                yScale),
+                        info.clip);
+                cellInfo.location = location;
+                for (int i = 0; i < here.numObjs; i++) {
+                    final Object object = here.objs[i];
+                    final Portrayal portrayal = getPortrayalForObject(object);
+                    if (portrayal instanceof SimplePortrayal2D
+                            && ((SimplePortrayal2D) portrayal).hitObject(object, cellInfo))
+                        putInHere.add(new LocationWrapper(object, location, this) {
+                            // the object may have moved by the time the inspector asks
+                            @Override
+                            public Object getLocation() {
+                                return grid.getObjectLocation(object);
+                            }
+                        });
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * POSEIDON, an agent-based model of fisheries
+ * Copyright (c) 2023, CoHESyS Lab, cohesys.lab@gmail.com.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.ox.poseidon.gui.drawing;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import sim.field.grid.ObjectGrid2D;
+
+/**
+ * The rasters of the encodings being drawn, shared by every {@link ColorfulGrid} using the same cache: displays
+ * showing the same encoding of the same map evaluate it once per model step between them (each raster remembers
+ * the step it was filled at). Entries are kept as long as some grid uses them and evicted once the last one
+ * releases them, typically when its window is closed.
+ * <p>
+ * Meant to be used from the EDT only, like the grids themselves.
+ */
+public class LayerCache {
+
+    private static class Layer {
+
+        private final EncodingRaster raster;
+
+        private final Set<Object> users = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        /**
+         * the background evaluation filling the raster, if any
+         */
+        private CompletableFuture<double[]> evaluation;
+
+        private Layer(EncodingRaster raster) {
+            this.raster = raster;
+        }
+    }
+
+    /**
+     * by map, then by encoding
+     */
+    private final Map<ObjectGrid2D, Map<ColorEncoding, Layer>> layers = new IdentityHashMap<>();
+
+    /**
+     * what to call, by user, when a background evaluation is over
+     */
+    private final Map<Object, List<Runnable>> repaintListeners = new IdentityHashMap<>();
+
+    /**
+     * the raster of the encoding over the map, created empty the first time anybody asks for it
+     *
+     * @param user whoever is going to draw it; keeps the raster alive until released
+     */
+    public EncodingRaster get(Object user, ObjectGrid2D grid, ColorEncoding encoding) {
+        final Layer layer = layers.computeIfAbsent(grid, key -> new HashMap<>())
+                .computeIfAbsent(encoding, key -> new Layer(new EncodingRaster(grid.getWidth(), grid.getHeight())));
+        layer.users.add(user);
+        return layer.raster;
+    }
+
+    /**
+     * @return every raster of the map, with the encoding it holds
+     */
+    public Map<ColorEncoding, EncodingRaster> rastersOf(ObjectGrid2D grid) {
+        final Map<ColorEncoding, EncodingRaster> rasters = new HashMap<>();
+        final Map<ColorEncoding, Layer> ofGrid = layers.get(grid);
+        if (ofGrid != null)
+            for (Map.Entry<ColorEncoding, Layer> entry : ofGrid.entrySet())
+                rasters.put(entry.getKey(), entry.getValue().raster);
+        return rasters;
+    }
+
+    /**
+     * @return the background evaluation filling this raster, or null if there is none
+     */
+    public CompletableFuture<double[]> getEvaluation(ObjectGrid2D grid, ColorEncoding encoding) {
+        final Layer layer = find(grid, encoding);
+        return layer == null ? null : layer.evaluation;
+    }
+
+    public void setEvaluation(ObjectGrid2D grid, ColorEncoding encoding, CompletableFuture<double[]> evaluation) {
+        final Layer layer = find(grid, encoding);
+        if (layer != null) layer.evaluation = evaluation;
+    }
+
+    /**
+     * forgets about the evaluation, if it is the one running for the raster
+     *
+     * @return false if the evaluation had been discarded in the meantime (its values are stale)
+     */
+    public boolean finishEvaluation(ObjectGrid2D grid, ColorEncoding encoding, CompletableFuture<double[]> evaluation) {
+        final Layer layer = find(grid, encoding);
+        if (layer == null || layer.evaluation != evaluation) return false;
+        layer.evaluation = null;
+        return true;
+    }
+
+    /**
+     * every raster of the map will be re-evaluated the next time it is needed; evaluations running now are discarded
+     */
+    public void invalidate(ObjectGrid2D grid) {
+        final Map<ColorEncoding, Layer> ofGrid = layers.get(grid);
+        if (ofGrid == null) return;
+        for (Layer layer : ofGrid.values()) {
+            layer.raster.invalidate();
+            layer.evaluation = null;
+        }
+    }
+
+    /**
+     * the raster of the encoding is dropped, whoever was using it
+     */
+    public void remove(ColorEncoding encoding) {
+        for (Map<ColorEncoding, Layer> ofGrid : layers.values()) ofGrid.remove(encoding);
+    }
+
+    /**
+     * the user stops using the encodings not listed; rasters nobody uses any more are dropped
+     */
+    public void retain(Object user, Collection<ColorEncoding> encodings) {
+        for (Map<ColorEncoding, Layer> ofGrid : layers.values()) {
+            for (Map.Entry<ColorEncoding, Layer> entry : ofGrid.entrySet())
+                if (!encodings.contains(entry.getKey())) entry.getValue().users.remove(user);
+        }
+        evict();
+    }
+
+    /**
+     * the user is done drawing (its window closed): its listeners go and so do the rasters only it was using
+     */
+    public void release(Object user) {
+        repaintListeners.remove(user);
+        for (Map<ColorEncoding, Layer> ofGrid : layers.values())
+            for (Layer layer : ofGrid.values()) layer.users.remove(user);
+        evict();
+    }
+
+    private void evict() {
+        for (Iterator<Map<ColorEncoding, Layer>> grids = layers.values().iterator(); grids.hasNext(); ) {
+            final Map<ColorEncoding, Layer> ofGrid = grids.next();
+            ofGrid.values().removeIf(layer -> layer.users.isEmpty());
+            if (ofGrid.isEmpty()) grids.remove();
+        }
+    }
+
+    public void addRepaintListener(Object user, Runnable repaint) {
+        repaintListeners.computeIfAbsent(user, key -> new LinkedList<>()).add(repaint);
+    }
+
+    /**
+     * tells every user that new values are ready to be drawn
+     */
+    public void repaintAll() {
+        for (List<Runnable> listeners : repaintListeners.values()) for (Runnable listener : listeners) listener.run();
+    }
+
+    /**
+     * @return how many rasters are cached
+     */
+    public int size() {
+        int size = 0;
+        for (Map<ColorEncoding, Layer> ofGrid : layers.values()) size += ofGrid.size();
+        return size;
+    }
+
+    private Layer find(ObjectGrid2D grid, ColorEncoding encoding) {
+        final Map<ColorEncoding, Layer> ofGrid = layers.get(grid);
+        return ofGrid == null ? null : ofGrid.get(encoding);
+    }
+}
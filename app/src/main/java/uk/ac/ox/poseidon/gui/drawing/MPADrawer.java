@@ -19,18 +19,23 @@
 package uk.ac.ox.poseidon.gui.drawing;
 
 import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Envelope;
 import com.vividsolutions.jts.geom.Point;
 import com.vividsolutions.jts.geom.Polygon;
 import com.vividsolutions.jts.util.GeometricShapeFactory;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 import java.awt.event.MouseMotionListener;
+import java.util.ArrayList;
 import java.util.Arrays;
-import javax.swing.*;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
 import sim.display.Display2D;
-import sim.portrayal.grid.FastObjectGridPortrayal2D;
+import sim.field.geo.GeomGridField;
 import sim.util.geo.MasonGeometry;
 import uk.ac.ox.oxfish.geography.NauticalMap;
+import uk.ac.ox.oxfish.geography.SeaTile;
 import uk.ac.ox.poseidon.gui.FishGUI;
 
 /**
@@ -44,7 +49,7 @@ public class MPADrawer implements MouseListener, MouseMotionListener {
     private final Display2D fishDisplay;
     private final CoordinateTransformer transformer;
     private final NauticalMap map;
-    private final FastObjectGridPortrayal2D bathymetryPortrayal;
+    private final ColorfulGrid bathymetryPortrayal;
     private final FishGUI scheduler;
     private final GeometricShapeFactory geometryFactory = new GeometricShapeFactory();
     private boolean hasDragged = false;
@@ -55,11 +60,18 @@ public class MPADrawer implements MouseListener, MouseMotionListener {
     private boolean attached = false;
     private MouseListener[] listeners;
 
+    /**
+     * when true drawn MPAs are queued rather than applied, until {@link #applyPending()} is called
+     */
+    private boolean batching = false;
+
+    private final List<Polygon> pending = new LinkedList<>();
+
     public MPADrawer(
             Display2D fishGUI,
             CoordinateTransformer transformer,
             NauticalMap map,
-            FastObjectGridPortrayal2D mapPortrayal,
+            ColorfulGrid mapPortrayal,
             FishGUI scheduler) {
         this.fishDisplay = fishGUI;
         this.transformer = transformer;
@@ -88,6 +100,92 @@ public class MPADrawer implements MouseListener, MouseMotionListener {
         }
     }
 
+    /**
+     * applies all the MPAs drawn in batch mode at once
+     *
+     * @return the number of MPAs applied
+     */
+    public int applyPending() {
+        final List<Polygon> toApply = new ArrayList<>(pending);
+        pending.clear();
+        if (!toApply.isEmpty()) apply(toApply);
+        return toApply.size();
+    }
+
+    /**
+     * adds the MPAs to the map in a single model-thread command, then repaints only the cells that became protected.
+     * Rather than recomputing the MPA of every tile in the map, only the tiles whose centre falls within each
+     * polygon's envelope are checked
+     */
+    private void apply(List<Polygon> polygons) {
+        final int[] dirty = {Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE};
+        scheduler
+                .getCommands()
+                .run(state -> {
+                    for (Polygon polygon : polygons) {
+                        final MasonGeometry mpa = new MasonGeometry(polygon);
+                        map.getMpaVectorField().addGeometry(mpa);
+                        protectTiles(polygon, mpa, dirty);
+                    }
+                })
+                .thenRun(() -> {
+                    if (dirty[0] > dirty[2]) return;
+                    // protection changes even the immutable encodings (depth draws MPAs)
+                    bathymetryPortrayal.invalidate(dirty[0], dirty[1], dirty[2], dirty[3]);
+                    fishDisplay.repaint();
+                });
+    }
+
+    /**
+     * assigns the MPA to the tiles whose centre it contains, unless they are already protected (which is what
+     * recomputing the whole map would do, since older MPAs come first)
+     *
+     * @param dirty the bounds {minX,minY,maxX,maxY} of the cells changed so far; grown to include the new ones
+     */
+    private void protectTiles(Polygon polygon, MasonGeometry mpa, int[] dirty) {
+        final GeomGridField raster = map.getRasterBathymetry();
+        final Envelope envelope = polygon.getEnvelopeInternal();
+        // grid rows grow southward, so the envelope's corners may come out flipped
+        final int x0 = raster.toXCoord(envelope.getMinX());
+        final int x1 = raster.toXCoord(envelope.getMaxX());
+        final int y0 = raster.toYCoord(envelope.getMinY());
+        final int y1 = raster.toYCoord(envelope.getMaxY());
+        final int minX = Math.max(Math.min(x0, x1), 0);
+        final int maxX = Math.min(Math.max(x0, x1), map.getWidth() - 1);
+        final int minY = Math.max(Math.min(y0, y1), 0);
+        final int maxY = Math.min(Math.max(y0, y1), map.getHeight() - 1);
+
+        for (int x = minX; x <= maxX; x++)
+            for (int y = minY; y <= maxY; y++) {
+                final SeaTile tile = map.getSeaTile(x, y);
+                if (tile.isProtected() || !polygon.contains(raster.toPoint(x, y))) continue;
+                tile.assignMpa(mpa);
+                dirty[0] = Math.min(dirty[0], x);
+                dirty[1] = Math.min(dirty[1], y);
+                dirty[2] = Math.max(dirty[2], x);
+                dirty[3] = Math.max(dirty[3], y);
+            }
+    }
+
+    public boolean isBatching() {
+        return batching;
+    }
+
+    /**
+     * @param batching when true drawn MPAs are queued; turning it off applies whatever was queued
+     */
+    public void setBatching(boolean batching) {
+        this.batching = batching;
+        if (!batching) applyPending();
+    }
+
+    /**
+     * @return the number of MPAs drawn but not applied yet
+     */
+    public int getPendingCount() {
+        return pending.size();
+    }
+
     /**
      * Invoked when the mouse button has been clicked (pressed
      * and released) on a component.
@@ -150,18 +248,10 @@ public class MPADrawer implements MouseListener, MouseMotionListener {
             final Polygon rectangle = geometryFactory.createRectangle();
             System.out.println(rectangle);
 
-            synchronized (scheduler.state.schedule) {
-                map.getMpaVectorField().addGeometry(new MasonGeometry(rectangle));
-                map.recomputeTilesMPA();
-                SwingUtilities.invokeLater(new Runnable() {
-                    @Override
-                    public void run() {
-                        boolean original = bathymetryPortrayal.isImmutableField();
-                        bathymetryPortrayal.setImmutableField(false);
-                        fishDisplay.repaint();
-                        bathymetryPortrayal.setImmutableField(original);
-                    }
-                });
+            if (batching) {
+                pending.add(rectangle);
+            } else {
+                apply(Collections.singletonList(rectangle));
             }
 
             hasDragged = false;
@@ -0,0 +1,133 @@
+/*
+ * POSEIDON, an agent-based model of fisheries
+ * Copyright (c) 2023, CoHESyS Lab, cohesys.lab@gmail.com.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.ox.poseidon.gui.drawing;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import sim.field.grid.ObjectGrid2D;
+import uk.ac.ox.oxfish.geography.SeaTile;
+
+/**
+ * Evaluates expensive encodings (regression heatmaps and the like) for the whole grid on a fork-join pool,
+ * splitting the grid in strips of columns, so that neither the EDT nor a single core pays for it.
+ * <p>
+ * The encodings are called from the pool's threads while the model may be stepping: they should only read the model.
+ */
+public class ParallelEncodingEvaluator {
+
+    /**
+     * below this many cells a strip is evaluated rather than split further
+     */
+    private static final int CELLS_PER_TASK = 2048;
+
+    /**
+     * shared by all the grids; one core is left to the model and the EDT
+     */
+    private static final ForkJoinPool POOL =
+            new ForkJoinPool(Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+
+    private ParallelEncodingEvaluator() {}
+
+    /**
+     * starts evaluating the encoding for every tile of the grid in the background
+     *
+     * @param tiles    the grid of seatiles
+     * @param encoding the encoding to evaluate
+     * @return the values, column-major (same layout as {@link EncodingRaster})
+     */
+    public static CompletableFuture<double[]> evaluate(ObjectGrid2D tiles, DoubleEncoding encoding) {
+        return evaluate(tiles, encoding, null);
+    }
+
+    /**
+     * starts evaluating the encoding for every tile of the grid in the background, keeping track of how far it got
+     *
+     * @param progress told about every strip evaluated; can be null
+     */
+    public static CompletableFuture<double[]> evaluate(
+            ObjectGrid2D tiles, DoubleEncoding encoding, EvaluationProgress progress) {
+        final int width = tiles.getWidth();
+        final int height = tiles.getHeight();
+        if (progress != null) progress.start((long) width * height);
+        return CompletableFuture.supplyAsync(
+                () -> {
+                    final double[] values = new double[width * height];
+                    new Strip(tiles.field, encoding, values, height, 0, width, progress).invoke();
+                    return values;
+                },
+                POOL);
+    }
+
+    /**
+     * evaluates columns [from,to) of the grid, halving the strip until it is small enough
+     */
+    private static class Strip extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Object[][] field;
+
+        private final DoubleEncoding encoding;
+
+        private final double[] values;
+
+        private final int height;
+
+        private final int from;
+
+        private final int to;
+
+        private final EvaluationProgress progress;
+
+        private Strip(
+                Object[][] field,
+                DoubleEncoding encoding,
+                double[] values,
+                int height,
+                int from,
+                int to,
+                EvaluationProgress progress) {
+            this.field = field;
+            this.encoding = encoding;
+            this.values = values;
+            this.height = height;
+            this.from = from;
+            this.to = to;
+            this.progress = progress;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1 && (long) (to - from) * height > CELLS_PER_TASK) {
+                final int middle = (from + to) >>> 1;
+                invokeAll(
+                        new Strip(field, encoding, values, height, from, middle, progress),
+                        new Strip(field, encoding, values, height, middle, to, progress));
+                return;
+            }
+            for (int x = from; x < to; x++) {
+                final Object[] column = field[x];
+                final int offset = x * height;
+                for (int y = 0; y < height; y++) values[offset + y] = encoding.encode((SeaTile) column[y]);
+            }
+            if (progress != null) progress.advance((long) (to - from) * height);
+        }
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * POSEIDON, an agent-based model of fisheries
+ * Copyright (c) 2023, CoHESyS Lab, cohesys.lab@gmail.com.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.ox.poseidon.gui.drawing;
+
+import java.awt.*;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import sim.util.gui.ColorMap;
+
+/**
+ * A back-buffer holding one pixel per grid cell. It remembers the value each pixel was painted with so that,
+ * when the raster changes, only the cells whose value actually moved are recolored; the image is then
+ * stretched over the display in a single drawImage rather than filling one rectangle per cell.
+ * <p>
+ * Images of encodings that don't change over time can also keep a copy already scaled to the size they are
+ * drawn at, so that panning and redrawing are a plain unscaled blit. There is only one, for the current zoom, and
+ * only while it is no larger than the screen: zoomed in further the small image is stretched instead.
+ */
+public class RetainedGridImage {
+
+    /**
+     * never keep a scaled copy larger than a 4K screen (about 32MB), even when drawing offscreen where the device
+     * has no bounds to speak of
+     */
+    private static final long MAX_SCALED_PIXELS = 3840L * 2160L;
+
+    private final int width;
+
+    private final int height;
+
+    private final BufferedImage image;
+
+    /**
+     * row-major ARGB pixels backing the image
+     */
+    private final int[] pixels;
+
+    /**
+     * column-major copy of the values the pixels were painted from (same layout as {@link EncodingRaster})
+     */
+    private final double[] paintedValues;
+
+    private final boolean keepScaledCopies;
+
+    /**
+     * a copy of the image at the size it was last drawn at, or null
+     */
+    private Image scaledCopy;
+
+    private boolean empty = true;
+
+    private EncodingRaster paintedRaster;
+
+    private long paintedRasterVersion;
+
+    private ColorMap paintedMap;
+
+    private long paintedMapVersion;
+
+    public RetainedGridImage(int width, int height) {
+        this(width, height, false);
+    }
+
+    /**
+     * @param keepScaledCopies true if the image will hardly ever change (immutable encodings) so that it pays to
+     *                         keep copies already scaled at the zoom it is displayed with
+     */
+    public RetainedGridImage(int width, int height, boolean keepScaledCopies) {
+        this.width = width;
+        this.height = height;
+        this.keepScaledCopies = keepScaledCopies;
+        image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        paintedValues = new double[width * height];
+    }
+
+    /**
+     * brings the image up to date with the raster: nothing to do if neither the raster nor the colors changed since
+     * last time, only the changed cells if only the raster did, everything otherwise
+     *
+     * @param raster     the values to show
+     * @param map        the color map to use
+     * @param mapVersion the version of the color map (see {@link ColorEncoding#getMapVersion()})
+     * @return the number of pixels recolored
+     */
+    public int refresh(EncodingRaster raster, ColorMap map, long mapVersion) {
+        final boolean recolorAll = paintedRaster != raster || paintedMap != map || paintedMapVersion != mapVersion;
+        if (!recolorAll && paintedRasterVersion == raster.getVersion()) return 0;
+
+        final int recolored = update(raster, map, recolorAll);
+        paintedRaster = raster;
+        paintedRasterVersion = raster.getVersion();
+        paintedMap = map;
+        paintedMapVersion = mapVersion;
+        return recolored;
+    }
+
+    /**
+     * recolors the pixels whose value differs from the one they were last painted with
+     *
+     * @param raster      the new values
+     * @param map         the color map to use
+     * @param repaintAll  true if the color map has changed, so that every pixel needs recoloring
+     * @return the number of pixels recolored
+     */
+    public int update(EncodingRaster raster, ColorMap map, boolean repaintAll) {
+        assert raster.getWidth() == width && raster.getHeight() == height;
+        final boolean everything = repaintAll || empty;
+        final double[] values = raster.getValues();
+        int recolored = 0;
+        for (int x = 0; x < width; x++) {
+            final int offset = x * height;
+            for (int y = 0; y < height; y++) {
+                final double value = values[offset + y];
+                // compare bits rather than values so that NaN == NaN
+                if (everything
+                        || Double.doubleToRawLongBits(value) != Double.doubleToRawLongBits(paintedValues[offset + y])) {
+                    paintedValues[offset + y] = value;
+                    pixels[y * width + x] = map.getRGB(value);
+                    recolored++;
+                }
+            }
+        }
+        empty = false;
+        if (recolored > 0) scaledCopy = null;
+        return recolored;
+    }
+
+    /**
+     * forces the next update to recolor every pixel
+     */
+    public void clear() {
+        empty = true;
+        paintedRaster = null;
+        scaledCopy = null;
+    }
+
+    /**
+     * draw the buffer over the area the grid occupies on screen
+     *
+     * @param graphics the graphics to draw on
+     * @param area     the area the whole grid takes (MASON's DrawInfo2D.draw)
+     */
+    public void drawOnto(Graphics2D graphics, Rectangle2D.Double area) {
+        final int x = (int) Math.floor(area.x);
+        final int y = (int) Math.floor(area.y);
+        final int drawnWidth = (int) Math.ceil(area.x + area.width) - x;
+        final int drawnHeight = (int) Math.ceil(area.y + area.height) - y;
+        if (drawnWidth <= 0 || drawnHeight <= 0) return;
+
+        if (keepScaledCopies && fitsOnScreen(graphics, drawnWidth, drawnHeight)) {
+            if (scaledCopy == null
+                    || scaledCopy.getWidth(null) != drawnWidth
+                    || scaledCopy.getHeight(null) != drawnHeight) {
+                scaledCopy = null; // let the old one go before making the new one
+                scaledCopy = scale(graphics, drawnWidth, drawnHeight);
+            }
+            graphics.drawImage(scaledCopy, x, y, null);
+        } else {
+            scaledCopy = null;
+            final Object oldInterpolation = graphics.getRenderingHint(RenderingHints.KEY_INTERPOLATION);
+            graphics.setRenderingHint(
+                    RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+            graphics.drawImage(image, x, y, drawnWidth, drawnHeight, null);
+            if (oldInterpolation != null)
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, oldInterpolation);
+        }
+    }
+
+    /**
+     * a scaled copy larger than the screen would mostly be drawn off it, at a cost of 4 bytes a pixel
+     */
+    private static boolean fitsOnScreen(Graphics2D graphics, int drawnWidth, int drawnHeight) {
+        final Rectangle screen = graphics.getDeviceConfiguration().getBounds();
+        final long pixels = (long) drawnWidth * drawnHeight;
+        return pixels <= MAX_SCALED_PIXELS && pixels <= (long) screen.width * screen.height;
+    }
+
+    /**
+     * a copy of the image stretched (nearest neighbour, so cells stay sharp) to the given size, in a format
+     * compatible with the screen so that blitting it is as fast as it gets
+     */
+    private Image scale(Graphics2D target, int scaledWidth, int scaledHeight) {
+        final BufferedImage scaled = target.getDeviceConfiguration()
+                .createCompatibleImage(scaledWidth, scaledHeight, Transparency.TRANSLUCENT);
+        final Graphics2D graphics = scaled.createGraphics();
+        graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+        graphics.drawImage(image, 0, 0, scaledWidth, scaledHeight, null);
+        graphics.dispose();
+        return scaled;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+}
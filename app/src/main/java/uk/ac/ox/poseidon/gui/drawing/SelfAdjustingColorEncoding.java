@@ -18,48 +18,153 @@
 
 package uk.ac.ox.poseidon.gui.drawing;
 
-import java.util.function.Function;
-import sim.util.gui.SimpleColorMap;
-import uk.ac.ox.oxfish.geography.SeaTile;
+import com.google.common.base.Preconditions;
+import java.util.concurrent.atomic.AtomicReference;
+import uk.ac.ox.poseidon.gui.GradientColorMap;
 
 /**
+ * A color encoding whose map stretches to fit the values it shows. The encoding itself has no side effects:
+ * whenever the values of the whole map have been computed they are scanned once for their range, and the new
+ * levels are handed to the map only between frames, so that no frame is drawn with two color scales.
+ * <p>
+ * The levels given to the constructor are the narrowest range shown. By default the range only ever grows
+ * beyond that; with a decay it slowly shrinks back towards the values currently observed, and with a
+ * percentile clip a few outliers no longer wash out every other color.
  * Created by carrknight on 7/12/17.
  */
 public class SelfAdjustingColorEncoding extends ColorEncoding {
 
-    private final Function<SeaTile, Double> adjustingEncoding;
-    private double maxValue;
+    /**
+     * how many bins the percentile clipping sorts values in; percentiles are only as precise as a bin
+     */
+    private static final int PERCENTILE_BINS = 1024;
+
+    private final GradientColorMap map;
+
+    private final double maxValue;
     private final double minValue;
 
+    /**
+     * the levels we last computed, which the map will have as soon as the next frame starts
+     */
+    private double currentMax;
+    private double currentMin;
+
+    /**
+     * levels computed but not yet given to the map (null when there are none)
+     */
+    private final AtomicReference<double[]> pendingLevels = new AtomicReference<>();
+
+    /**
+     * how much of the gap between the current levels and the observed ones is closed every time values are observed:
+     * 0 means the range never shrinks, 1 that it always fits the latest values exactly
+     */
+    private double decay = 0;
+
+    /**
+     * the share of observed values that must fall within the range; values beyond it are clipped (drawn with the
+     * extreme colors) rather than stretching the range. 1 means no clipping
+     */
+    private double percentile = 1;
+
     public SelfAdjustingColorEncoding(
-            SimpleColorMap map,
-            Function<SeaTile, Double> encoding,
-            boolean immutable,
-            double maxValue,
-            double minValue) {
-        super(map, encoding, immutable);
+            GradientColorMap map, DoubleEncoding encoding, boolean immutable, double maxValue, double minValue) {
+        super(
+                map,
+                tile -> {
+                    double value = encoding.encode(tile);
+                    return Double.isFinite(value) ? value : Double.NaN;
+                },
+                immutable);
+        this.map = map;
         this.maxValue = maxValue;
         this.minValue = minValue;
-        this.adjustingEncoding = encoding.andThen(new Function<Double, Double>() {
-            @Override
-            public Double apply(Double value) {
-                if (!Double.isFinite(value)) return Double.NaN;
-
-                if (value > SelfAdjustingColorEncoding.this.maxValue) {
-                    SelfAdjustingColorEncoding.this.maxValue = value;
-                    map.setLevels(
-                            SelfAdjustingColorEncoding.this.minValue,
-                            SelfAdjustingColorEncoding.this.maxValue,
-                            map.getColor(SelfAdjustingColorEncoding.this.minValue),
-                            map.getColor(SelfAdjustingColorEncoding.this.maxValue));
-                }
-                return value;
-            }
-        });
+        this.currentMax = maxValue;
+        this.currentMin = minValue;
+    }
+
+    /**
+     * computes the levels the map should have to show these values; they are applied at the start of the next frame
+     *
+     * @param values the values of the whole map (NaNs are ignored)
+     */
+    @Override
+    public synchronized void observe(double[] values) {
+        final double[] observed = observedRange(values, percentile);
+        if (observed == null) return;
+
+        final double targetMax = Math.max(maxValue, observed[1]);
+        final double targetMin = Math.min(minValue, observed[0]);
+        // widen straight away, shrink back only as fast as the decay allows
+        currentMax = targetMax >= currentMax ? targetMax : currentMax + decay * (targetMax - currentMax);
+        currentMin = targetMin <= currentMin ? targetMin : currentMin + decay * (targetMin - currentMin);
+
+        if (currentMax != map.getMaxLevel() || currentMin != map.getMinLevel())
+            pendingLevels.set(new double[] {currentMin, currentMax});
     }
 
+    /**
+     * gives the map the levels last observed, if they changed
+     */
     @Override
-    public Function<SeaTile, Double> getEncoding() {
-        return adjustingEncoding;
+    public void prepareFrame() {
+        final double[] levels = pendingLevels.getAndSet(null);
+        if (levels != null) map.setLevels(levels[0], levels[1]);
+    }
+
+    /**
+     * the range of the values, ignoring NaNs
+     *
+     * @param values     the values
+     * @param percentile the share of values the range needs to include: a lower and an upper tail of
+     *                   (1-percentile)/2 each are left out. 1 returns the real minimum and maximum
+     * @return {min,max} or null if there are no values
+     */
+    static double[] observedRange(double[] values, double percentile) {
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        int count = 0;
+        for (double value : values) {
+            if (Double.isNaN(value)) continue;
+            if (value < min) min = value;
+            if (value > max) max = value;
+            count++;
+        }
+        if (count == 0) return null;
+        if (percentile >= 1 || min == max) return new double[] {min, max};
+
+        // second pass, in bins, to find where the tails start
+        final int[] bins = new int[PERCENTILE_BINS];
+        final double binWidth = (max - min) / PERCENTILE_BINS;
+        for (double value : values) {
+            if (Double.isNaN(value)) continue;
+            bins[Math.min((int) ((value - min) / binWidth), PERCENTILE_BINS - 1)]++;
+        }
+        final long tail = (long) Math.floor(count * (1 - percentile) / 2);
+        int lower = 0;
+        long seen = bins[lower];
+        while (seen <= tail && lower < PERCENTILE_BINS - 1) seen += bins[++lower];
+        int upper = PERCENTILE_BINS - 1;
+        seen = bins[upper];
+        while (seen <= tail && upper > lower) seen += bins[--upper];
+        return new double[] {min + lower * binWidth, Math.min(max, min + (upper + 1) * binWidth)};
+    }
+
+    public double getDecay() {
+        return decay;
+    }
+
+    public void setDecay(double decay) {
+        Preconditions.checkArgument(decay >= 0 && decay <= 1, "decay must be between 0 and 1");
+        this.decay = decay;
+    }
+
+    public double getPercentile() {
+        return percentile;
+    }
+
+    public void setPercentile(double percentile) {
+        Preconditions.checkArgument(percentile > 0 && percentile <= 1, "percentile must be in (0,1]");
+        this.percentile = percentile;
     }
 }
@@ -0,0 +1,246 @@
+/*
+ * POSEIDON, an agent-based model of fisheries
+ * Copyright (c) 2023, CoHESyS Lab, cohesys.lab@gmail.com.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.ox.poseidon.gui.drawing;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Every icon in every tint, each already scaled at several sizes (halving from four times the original down to a
+ * couple of pixels), so that drawing a sprite never scales it: the size closest to the cell is blitted as it is.
+ * Built at startup, one icon/tint pair per task in parallel, working on the pixel arrays directly.
+ */
+public class SpriteAtlas {
+
+    /**
+     * no level is larger than this many pixels on either side
+     */
+    private static final int MAX_SIZE = 256;
+
+    /**
+     * nor smaller than this
+     */
+    private static final int MIN_SIZE = 2;
+
+    /**
+     * the color painted over by the tint; tinting with it gives back the original icon
+     */
+    public static final Color UNTINTED = Color.BLACK;
+
+    private final Map<BufferedImage, Map<Color, Sprite>> sprites = new ConcurrentHashMap<>();
+
+    /**
+     * builds, in parallel, the sprites of every icon in every tint (plus each icon untinted)
+     */
+    public static SpriteAtlas build(Collection<BufferedImage> icons, Collection<Color> tints) {
+        final SpriteAtlas atlas = new SpriteAtlas();
+        final List<Object[]> pairs = new ArrayList<>();
+        for (BufferedImage icon : icons) {
+            atlas.sprites.put(icon, new ConcurrentHashMap<>());
+            pairs.add(new Object[] {icon, UNTINTED});
+            for (Color tint : tints) pairs.add(new Object[] {icon, tint});
+        }
+        pairs.parallelStream().forEach(pair -> atlas.get((BufferedImage) pair[0], (Color) pair[1]));
+        return atlas;
+    }
+
+    /**
+     * the sprite of the icon in the given tint; built on the spot if the atlas didn't have it
+     */
+    public Sprite get(BufferedImage icon, Color tint) {
+        return sprites.computeIfAbsent(icon, key -> new ConcurrentHashMap<>())
+                .computeIfAbsent(tint, key -> new Sprite(tint(icon, tint)));
+    }
+
+    /**
+     * the icon with its opaque black pixels painted in the tint
+     */
+    private static BufferedImage tint(BufferedImage icon, Color tint) {
+        final int width = icon.getWidth();
+        final int height = icon.getHeight();
+        final int[] pixels = icon.getRGB(0, 0, width, height, null, 0, width);
+        final int oldRGB = UNTINTED.getRGB();
+        final int newRGB = tint.getRGB();
+        for (int i = 0; i < pixels.length; i++) if (pixels[i] == oldRGB) pixels[i] = newRGB;
+        final BufferedImage tinted = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        tinted.setRGB(0, 0, width, height, pixels, 0, width);
+        return tinted;
+    }
+
+    /**
+     * one tinted icon at all its sizes
+     */
+    public static class Sprite {
+
+        private final BufferedImage original;
+
+        /**
+         * largest first
+         */
+        private final Image[] levels;
+
+        private final int[] widths;
+
+        private final int[] heights;
+
+        private Sprite(BufferedImage original) {
+            this.original = original;
+            final List<Image> images = new ArrayList<>();
+            final List<int[]> sizes = new ArrayList<>();
+
+            final int width = original.getWidth();
+            final int height = original.getHeight();
+            final int longest = Math.max(width, height);
+            for (int factor = 4; factor > 1; factor /= 2) {
+                if (longest * factor > MAX_SIZE) continue;
+                images.add(compatible(upscale(original, width * factor, height * factor)));
+                sizes.add(new int[] {width * factor, height * factor});
+            }
+
+            int[] pixels = original.getRGB(0, 0, width, height, null, 0, width);
+            int levelWidth = width;
+            int levelHeight = height;
+            while (true) {
+                if (Math.max(levelWidth, levelHeight) <= MAX_SIZE) {
+                    images.add(compatible(toImage(pixels, levelWidth, levelHeight)));
+                    sizes.add(new int[] {levelWidth, levelHeight});
+                }
+                if (Math.max(levelWidth, levelHeight) / 2 < MIN_SIZE) break;
+                pixels = halve(pixels, levelWidth, levelHeight);
+                levelWidth = Math.max(1, levelWidth / 2);
+                levelHeight = Math.max(1, levelHeight / 2);
+            }
+
+            levels = images.toArray(new Image[0]);
+            widths = new int[levels.length];
+            heights = new int[levels.length];
+            for (int i = 0; i < levels.length; i++) {
+                widths[i] = sizes.get(i)[0];
+                heights[i] = sizes.get(i)[1];
+            }
+        }
+
+        /**
+         * the level closest in size to the sprite fitted (keeping its proportions) in a cell, the way
+         * ImagePortrayal2D would draw it
+         */
+        public Image forCell(double cellWidth, double cellHeight) {
+            final double target = original.getHeight() > original.getWidth()
+                    ? cellHeight / original.getHeight()
+                    : cellWidth / original.getWidth();
+            int best = 0;
+            double bestDistance = Double.POSITIVE_INFINITY;
+            for (int i = 0; i < levels.length; i++) {
+                final double distance = Math.abs(Math.log(widths[i] / (double) original.getWidth() / target));
+                if (distance < bestDistance) {
+                    best = i;
+                    bestDistance = distance;
+                }
+            }
+            return levels[best];
+        }
+
+        /**
+         * the tinted icon at its own size
+         */
+        public BufferedImage getOriginal() {
+            return original;
+        }
+
+        public int getLevels() {
+            return levels.length;
+        }
+
+        public int getLevelWidth(int level) {
+            return widths[level];
+        }
+
+        public int getLevelHeight(int level) {
+            return heights[level];
+        }
+    }
+
+    private static BufferedImage upscale(BufferedImage original, int width, int height) {
+        final BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        final Graphics2D graphics = scaled.createGraphics();
+        graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+        graphics.drawImage(original, 0, 0, width, height, null);
+        graphics.dispose();
+        return scaled;
+    }
+
+    /**
+     * averages each 2x2 block of pixels into one, weighting colors by their alpha so that transparent pixels don't
+     * darken the edges
+     */
+    static int[] halve(int[] pixels, int width, int height) {
+        final int halfWidth = Math.max(1, width / 2);
+        final int halfHeight = Math.max(1, height / 2);
+        final int[] half = new int[halfWidth * halfHeight];
+        for (int y = 0; y < halfHeight; y++) {
+            for (int x = 0; x < halfWidth; x++) {
+                int alpha = 0;
+                int red = 0;
+                int green = 0;
+                int blue = 0;
+                for (int dy = 0; dy < 2; dy++) {
+                    for (int dx = 0; dx < 2; dx++) {
+                        final int pixel =
+                                pixels[Math.min(2 * y + dy, height - 1) * width + Math.min(2 * x + dx, width - 1)];
+                        final int a = pixel >>> 24;
+                        alpha += a;
+                        red += a * ((pixel >> 16) & 0xFF);
+                        green += a * ((pixel >> 8) & 0xFF);
+                        blue += a * (pixel & 0xFF);
+                    }
+                }
+                half[y * halfWidth + x] = alpha == 0
+                        ? 0
+                        : (alpha / 4) << 24 | (red / alpha) << 16 | (green / alpha) << 8 | (blue / alpha);
+            }
+        }
+        return half;
+    }
+
+    private static BufferedImage toImage(int[] pixels, int width, int height) {
+        final BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        image.setRGB(0, 0, width, height, pixels, 0, width);
+        return image;
+    }
+
+    /**
+     * a copy in the screen's own format, so that drawing it is a straight blit
+     */
+    private static Image compatible(BufferedImage image) {
+        if (GraphicsEnvironment.isHeadless()) return image;
+        final BufferedImage copy = GraphicsEnvironment.getLocalGraphicsEnvironment()
+                .getDefaultScreenDevice()
+                .getDefaultConfiguration()
+                .createCompatibleImage(image.getWidth(), image.getHeight(), Transparency.TRANSLUCENT);
+        final Graphics2D graphics = copy.createGraphics();
+        graphics.drawImage(image, 0, 0, null);
+        graphics.dispose();
+        return copy;
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * POSEIDON, an agent-based model of fisheries
+ * Copyright (c) 2023, CoHESyS Lab, cohesys.lab@gmail.com.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.ox.poseidon.gui.drawing;
+
+import java.util.DoubleSummaryStatistics;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import uk.ac.ox.poseidon.gui.TriColorMap;
+
+/**
+ * An expensive, ever-changing encoding (a regression's predictions, say) drawn with three colors centered on the
+ * average of the values shown. The statistics come from the same pass that fills the raster, off the EDT, and
+ * the map takes the new levels only between frames.
+ * <p>
+ * The scale is set by the first values observed and then kept, so that colors can be compared over time; it moves
+ * again when asked to ({@link #recenter()}), or at every observation when recentering is on.
+ */
+public class StatisticsColorEncoding extends ColorEncoding {
+
+    private final TriColorMap map;
+
+    private final EvaluationProgress progress = new EvaluationProgress();
+
+    /**
+     * of the values last observed; null until then
+     */
+    private volatile DoubleSummaryStatistics statistics;
+
+    /**
+     * {min,mid,max} computed but not yet given to the map (null when there are none)
+     */
+    private final AtomicReference<double[]> pendingLevels = new AtomicReference<>();
+
+    /**
+     * whether the next values observed set the scale
+     */
+    private final AtomicBoolean recenterRequested = new AtomicBoolean(true);
+
+    private volatile boolean recentering = false;
+
+    public StatisticsColorEncoding(TriColorMap map, DoubleEncoding encoding) {
+        super(map, encoding, false, true);
+        this.map = map;
+    }
+
+    /**
+     * summarizes the (finite) values; if the scale is to move, the map is recentered on them at the start of the
+     * next frame
+     */
+    @Override
+    public void observe(double[] values) {
+        final DoubleSummaryStatistics observed = new DoubleSummaryStatistics();
+        for (double value : values) if (Double.isFinite(value)) observed.accept(value);
+        statistics = observed;
+        if (recenterRequested.getAndSet(false) || recentering) pendingLevels.set(levelsFor(observed));
+    }
+
+    /**
+     * sets the scale from the next values observed
+     */
+    public void recenter() {
+        recenterRequested.set(true);
+    }
+
+    public boolean isRecentering() {
+        return recentering;
+    }
+
+    /**
+     * @param recentering true to move the scale to every new set of values, false to keep it where it is
+     */
+    public void setRecentering(boolean recentering) {
+        this.recentering = recentering;
+    }
+
+    /**
+     * min, average and max; when they don't make a proper range the map falls back to -1, 10 and 40
+     */
+    static double[] levelsFor(DoubleSummaryStatistics statistics) {
+        if (statistics.getCount() == 0 || statistics.getMin() == statistics.getMax()) return new double[] {-1, 10, 40};
+        final double min = statistics.getMin();
+        final double max = statistics.getMax();
+        final double average = statistics.getAverage();
+        // with only two distinct values the average can sit on one end
+        return new double[] {min, average > min && average < max ? average : (min + max) / 2, max};
+    }
+
+    @Override
+    public void prepareFrame() {
+        final double[] levels = pendingLevels.getAndSet(null);
+        if (levels != null && (levels[0] != map.getMin() || levels[1] != map.getMid() || levels[2] != map.getMax()))
+            map.setLevels(levels[0], levels[1], levels[2]);
+    }
+
+    @Override
+    public EvaluationProgress getProgress() {
+        return progress;
+    }
+
+    /**
+     * @return the statistics of the values last computed, or null if they have never been
+     */
+    public DoubleSummaryStatistics getStatistics() {
+        return statistics;
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * POSEIDON, an agent-based model of fisheries
+ * Copyright (c) 2023, CoHESyS Lab, cohesys.lab@gmail.com.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.ox.poseidon.gui.drawing;
+
+import java.awt.geom.AffineTransform;
+import java.awt.geom.NoninvertibleTransformException;
+import java.awt.geom.Point2D;
+import sim.display.Display2D;
+import sim.util.Int2D;
+
+/**
+ * The transform between the pixels of a display and the cells of the grid it shows. Both directions are cached and
+ * only rebuilt when the display is zoomed, scrolled or resized, so converting a mouse position costs a couple of
+ * multiplications rather than building and inverting a transform every time.
+ */
+public class Viewport {
+
+    private final Display2D display;
+
+    private final int gridWidth;
+
+    private final int gridHeight;
+
+    /**
+     * grid coordinates to pixels
+     */
+    private final AffineTransform forward = new AffineTransform();
+
+    /**
+     * pixels to grid coordinates
+     */
+    private final AffineTransform inverse = new AffineTransform();
+
+    /**
+     * what the display looked like when the transforms were built
+     */
+    private double scale = Double.NaN;
+
+    private double offsetX;
+
+    private double offsetY;
+
+    private double displayWidth;
+
+    private double displayHeight;
+
+    public Viewport(Display2D display, int gridWidth, int gridHeight) {
+        this.display = display;
+        this.gridWidth = gridWidth;
+        this.gridHeight = gridHeight;
+    }
+
+    /**
+     * rebuilds the transforms if the zoom, offset or size of the display changed since they were last built
+     */
+    private void update() {
+        final Point2D.Double offset = display.getOffset();
+        final double currentScale = display.getScale();
+        final double width = display.insideDisplay.width;
+        final double height = display.insideDisplay.height;
+        if (currentScale == scale
+                && offset.x == offsetX
+                && offset.y == offsetY
+                && width == displayWidth
+                && height == displayHeight) return;
+
+        scale = currentScale;
+        offsetX = offset.x;
+        offsetY = offset.y;
+        displayWidth = width;
+        displayHeight = height;
+
+        forward.setToTranslation(offsetX, offsetY);
+        forward.scale(scale, scale);
+        // the inside display can be resized at any point, so is the size of a cell
+        forward.scale(width / gridWidth, height / gridHeight);
+        try {
+            inverse.setTransform(forward.createInverse());
+        } catch (NoninvertibleTransformException e) {
+            e.printStackTrace();
+            System.err.println("failure to transform");
+        }
+    }
+
+    /**
+     * forces the transforms to be rebuilt the next time they are used
+     */
+    public void invalidate() {
+        scale = Double.NaN;
+    }
+
+    /**
+     * @return the grid cell under the pixel
+     */
+    public Int2D guiToGridPosition(double guiX, double guiY) {
+        final Point2D grid = guiToGrid(guiX, guiY);
+        return new Int2D((int) grid.getX(), (int) grid.getY());
+    }
+
+    /**
+     * @return the pixel in grid coordinates (not rounded to the cell)
+     */
+    public Point2D guiToGrid(double guiX, double guiY) {
+        update();
+        return inverse.transform(new Point2D.Double(guiX, guiY), null);
+    }
+
+    /**
+     * @return where the grid coordinates end up on the display
+     */
+    public Point2D gridToGui(double gridX, double gridY) {
+        update();
+        return forward.transform(new Point2D.Double(gridX, gridY), null);
+    }
+
+    /**
+     * converts many pixels at once
+     *
+     * @param gui    x,y pairs of pixels
+     * @param grid   where to write the x,y pairs in grid coordinates; can be the same array as gui
+     * @param points how many pairs to convert
+     */
+    public void guiToGrid(double[] gui, double[] grid, int points) {
+        update();
+        inverse.transform(gui, 0, grid, 0, points);
+    }
+
+    /**
+     * converts many grid coordinates to pixels at once
+     *
+     * @param grid   x,y pairs in grid coordinates
+     * @param gui    where to write the x,y pairs of pixels; can be the same array as grid
+     * @param points how many pairs to convert
+     */
+    public void gridToGui(double[] grid, double[] gui, int points) {
+        update();
+        forward.transform(grid, 0, gui, 0, points);
+    }
+
+    public int getGridWidth() {
+        return gridWidth;
+    }
+
+    public int getGridHeight() {
+        return gridHeight;
+    }
+}
@@ -223,7 +223,7 @@ public class DataWidgetBuilder implements WidgetBuilder<JComponent, SwingMetawid
                 @Override
                 public void actionPerformed(ActionEvent e) {
                     DataCharter charter = new DataCharter(dataset.getPolicy(), column);
-                    charter.start(gui);
+                    charter.start(gui, gui.getUpdateBus());
                 }
             });
             // create button to output csv as well
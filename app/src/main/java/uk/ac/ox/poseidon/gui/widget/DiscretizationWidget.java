@@ -32,10 +32,12 @@ import uk.ac.ox.oxfish.model.FishState;
 import uk.ac.ox.poseidon.gui.DiscreteColorMap;
 import uk.ac.ox.poseidon.gui.FishGUI;
 import uk.ac.ox.poseidon.gui.drawing.ColorEncoding;
+import uk.ac.ox.poseidon.gui.drawing.GroupRaster;
 
 /**
  * Similar to GeographicalRegressionWidget except it draws the discretization rather than
- * the heatmap (also it plots over the same grid rather than a new one)
+ * the heatmap (also it plots over the same grid rather than a new one).
+ * Groups are looked up once into a {@link GroupRaster}; they can be shown filled or as boundaries only
  * Created by carrknight on 11/30/16.
  */
 public class DiscretizationWidget implements WidgetBuilder<JComponent, SwingMetawidget> {
@@ -62,7 +64,7 @@ public class DiscretizationWidget implements WidgetBuilder<JComponent, SwingMeta
             MapDiscretization discretization =
                     ((MapDiscretization) PropertyUtils.getProperty(metawidget.getToInspect(), address));
 
-            return new DiscretizationJButton(gui, discretization);
+            return new DiscretizationPanel(gui, discretization);
 
         } catch (IllegalAccessException | InvocationTargetException | NoSuchMethodException e) {
             // because of recursion this will happen
@@ -71,7 +73,7 @@ public class DiscretizationWidget implements WidgetBuilder<JComponent, SwingMeta
         }
     }
 
-    private static class DiscretizationJButton extends JButton implements ActionListener {
+    private static class DiscretizationPanel extends JPanel {
 
         private static final long serialVersionUID = 1L;
 
@@ -80,21 +82,43 @@ public class DiscretizationWidget implements WidgetBuilder<JComponent, SwingMeta
         private final MapDiscretization regression;
 
         /**
-         * Creates a button with no set text or icon.
+         * the group of every cell, looked up the first time the discretization is shown
          */
-        public DiscretizationJButton(FishGUI gui, MapDiscretization regression) {
+        private GroupRaster groups;
+
+        public DiscretizationPanel(FishGUI gui, MapDiscretization regression) {
             this.gui = gui;
             this.regression = regression;
-            setText("Show discretization");
-            addActionListener(this);
+            setLayout(new BoxLayout(this, BoxLayout.X_AXIS));
+
+            JButton showButton = new JButton("Show discretization");
+            showButton.addActionListener(new ActionListener() {
+                @Override
+                public void actionPerformed(ActionEvent e) {
+                    showGroups();
+                }
+            });
+            add(showButton);
+
+            JToggleButton outlineButton = new JToggleButton("Outline only");
+            outlineButton.addActionListener(new ActionListener() {
+                @Override
+                public void actionPerformed(ActionEvent e) {
+                    gui.getDiscretizationOutline().setField(outlineButton.isSelected() ? getGroups() : null);
+                    gui.forceRepaint();
+                }
+            });
+            add(outlineButton);
         }
 
-        /**
-         * Invoked when an action occurs.
-         */
-        @Override
-        public void actionPerformed(ActionEvent e) {
+        private GroupRaster getGroups() {
+            if (groups == null) groups = GroupRaster.of(regression, ((FishState) gui.state).getMap());
+            return groups;
+        }
+
+        private void showGroups() {
             final FishState state = (FishState) gui.state;
+            final GroupRaster groups = getGroups();
 
             // remove a previous one if it exists
             gui.getMainPortrayal().getEncodings().remove("Discretization");
@@ -103,10 +127,7 @@ public class DiscretizationWidget implements WidgetBuilder<JComponent, SwingMeta
                             "Discretization",
                             new ColorEncoding(
                                     new DiscreteColorMap(state.getRandom()),
-                                    tile -> {
-                                        Integer group = regression.getGroup(tile);
-                                        return group == null ? -1 : (double) group;
-                                    },
+                                    tile -> groups.get(tile.getGridX(), tile.getGridY()),
                                     true));
             gui.getMainPortrayal().setSelectedEncoding("Discretization");
             gui.forceRepaint();
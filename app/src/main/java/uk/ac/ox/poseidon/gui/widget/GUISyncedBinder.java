@@ -18,26 +18,137 @@
 
 package uk.ac.ox.poseidon.gui.widget;
 
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.swing.*;
+import javax.swing.text.JTextComponent;
+import org.apache.commons.beanutils.BeanUtils;
+import org.apache.commons.beanutils.PropertyUtils;
 import org.metawidget.swing.SwingMetawidget;
-import sim.display.GUIState;
+import org.metawidget.swing.widgetprocessor.binding.beanutils.BeanUtilsBindingProcessor;
+import uk.ac.ox.poseidon.gui.FishGUI;
 
 /**
  * Like an immediate binder but has a link to the GUIState to sync against
- * because updateInspector() doesn't really pass GUIState as it should
+ * because updateInspector() doesn't really pass GUIState as it should.
+ * The widgets are read here, on the EDT; only the copied values go to the model, through its command queue. Edits
+ * made while a write is still queued are merged into it
  * Created by carrknight on 6/7/15.
  */
 public class GUISyncedBinder extends ImmediateBinder {
 
-    private final GUIState gui;
+    private final FishGUI gui;
 
-    public GUISyncedBinder(GUIState gui) {
+    /**
+     * writes waiting for the model, by the outermost metawidget they come from
+     */
+    private final Map<SwingMetawidget, PendingWrite> pendingWrites = new ConcurrentHashMap<>();
+
+    public GUISyncedBinder(FishGUI gui) {
         this.gui = gui;
     }
 
     @Override
     public void writeToObject(SwingMetawidget metawidget, boolean rebind) {
-        synchronized (gui.state.schedule) {
-            super.writeToObject(metawidget, rebind);
+        final SwingMetawidget root = outermost(metawidget);
+        final Object bean = root.getToInspect();
+        if (bean == null) return;
+        final Map<String, Object> values = new LinkedHashMap<>();
+        readEditableWidgets(root, Collections.emptyList(), values);
+
+        final boolean[] alreadyQueued = {true};
+        pendingWrites.compute(root, (widget, queued) -> {
+            final PendingWrite write = queued == null ? new PendingWrite(bean) : queued;
+            alreadyQueued[0] = queued != null;
+            write.values.putAll(values);
+            if (rebind) write.toRebind.add(metawidget);
+            return write;
+        });
+        if (alreadyQueued[0]) return;
+
+        gui.getCommands()
+                .call(model -> {
+                    // taken out before applying, so that later edits queue a write of their own
+                    final PendingWrite write = pendingWrites.remove(root);
+                    for (Map.Entry<String, Object> value : write.values.entrySet()) apply(write.bean, value);
+                    return write.toRebind;
+                })
+                .thenAccept(toRebind -> {
+                    for (SwingMetawidget widget : toRebind)
+                        widget.getWidgetProcessor(BeanUtilsBindingProcessor.class)
+                                .rebind(widget.getToInspect(), widget);
+                });
+    }
+
+    private static void apply(Object bean, Map.Entry<String, Object> value) {
+        try {
+            if (PropertyUtils.isWriteable(bean, value.getKey()))
+                // converts the text of text fields to the property's type
+                BeanUtils.setProperty(bean, value.getKey(), value.getValue());
+        } catch (Exception e) {
+            System.err.print("failed to set " + value.getKey() + "! " + e);
+            e.printStackTrace();
+        }
+    }
+
+    private static SwingMetawidget outermost(SwingMetawidget metawidget) {
+        SwingMetawidget root = metawidget;
+        for (Container parent = metawidget.getParent(); parent != null; parent = parent.getParent())
+            if (parent instanceof SwingMetawidget) root = (SwingMetawidget) parent;
+        return root;
+    }
+
+    /**
+     * copies the values of the editable widgets metawidget built (it names them after their property), by dotted
+     * property path
+     */
+    private static void readEditableWidgets(Container container, List<String> path, Map<String, Object> values) {
+        for (Component child : container.getComponents()) {
+            final String name = child.getName();
+            if (child instanceof SwingMetawidget) {
+                if (name == null) continue;
+                final List<String> nested = new ArrayList<>(path);
+                nested.add(name);
+                readEditableWidgets((SwingMetawidget) child, nested, values);
+            } else if (name != null && (child instanceof JSpinner
+                    || child instanceof JCheckBox
+                    || child instanceof JComboBox
+                    || (child instanceof JTextComponent && ((JTextComponent) child).isEditable()))) {
+                final List<String> property = new ArrayList<>(path);
+                property.add(name);
+                values.put(String.join(".", property), valueOf(child));
+            } else if (child instanceof JPanel || child instanceof Box)
+                readEditableWidgets((Container) child, path, values);
+        }
+    }
+
+    private static Object valueOf(Component widget) {
+        if (widget instanceof JSpinner) return ((JSpinner) widget).getValue();
+        if (widget instanceof JCheckBox) return ((JCheckBox) widget).isSelected();
+        if (widget instanceof JComboBox) return ((JComboBox<?>) widget).getSelectedItem();
+        return ((JTextComponent) widget).getText();
+    }
+
+    private static class PendingWrite {
+
+        private final Object bean;
+
+        /**
+         * written to by the EDT until the command takes it out of the map; read only by the model after that
+         */
+        private final Map<String, Object> values = new LinkedHashMap<>();
+
+        private final Set<SwingMetawidget> toRebind = new HashSet<>();
+
+        private PendingWrite(Object bean) {
+            this.bean = bean;
         }
     }
 }
@@ -23,10 +23,11 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 import java.lang.reflect.InvocationTargetException;
 import java.util.DoubleSummaryStatistics;
 import java.util.Map;
-import java.util.function.Function;
 import javax.swing.*;
 import org.apache.commons.beanutils.PropertyUtils;
 import org.metawidget.swing.SwingMetawidget;
@@ -42,9 +43,11 @@ import uk.ac.ox.oxfish.geography.SeaTile;
 import uk.ac.ox.oxfish.model.FishState;
 import uk.ac.ox.poseidon.gui.FishGUI;
 import uk.ac.ox.poseidon.gui.TriColorMap;
-import uk.ac.ox.poseidon.gui.drawing.ColorEncoding;
 import uk.ac.ox.poseidon.gui.drawing.ColorfulGrid;
 import uk.ac.ox.poseidon.gui.drawing.CoordinateTransformer;
+import uk.ac.ox.poseidon.gui.drawing.DoubleEncoding;
+import uk.ac.ox.poseidon.gui.drawing.EvaluationProgress;
+import uk.ac.ox.poseidon.gui.drawing.StatisticsColorEncoding;
 
 /**
  * Created by carrknight on 6/30/16.
@@ -105,6 +108,8 @@ public class GeographicalRegressionWidget implements WidgetBuilder<JComponent, S
 
         private static final long serialVersionUID = 1L;
 
+        private static final int STATUS_REFRESH_MILLIS = 200;
+
         private final FishGUI gui;
 
         @SuppressWarnings("rawtypes")
@@ -112,6 +117,11 @@ public class GeographicalRegressionWidget implements WidgetBuilder<JComponent, S
 
         private final Fisher fisher;
 
+        /**
+         * shared by all the windows this button opens, so they evaluate the regression once between them
+         */
+        private StatisticsColorEncoding heatmap;
+
         /**
          * Creates a button with no set text or icon.
          */
@@ -133,39 +143,23 @@ public class GeographicalRegressionWidget implements WidgetBuilder<JComponent, S
 
             final FishState state = (FishState) gui.state;
 
-            ColorfulGrid heatmapPortrayal = new ColorfulGrid(gui.guirandom);
-            java.util.List<SeaTile> tiles = state.getMap().getAllSeaTilesExcludingLandAsList();
-            DoubleSummaryStatistics statistics = new DoubleSummaryStatistics();
-            for (SeaTile tile : tiles) {
-                double predict = regression.predict(tile, state.getHoursSinceStart(), fisher, state);
-                if (Double.isFinite(predict)) statistics.accept(predict);
-            }
-
-            double min = 0;
-            double max = 0;
-            double average = 0;
-            if (statistics.getCount() > 0) {
-                min = statistics.getMin();
-                max = statistics.getMax();
-                average = statistics.getAverage();
-            }
-            if (min == max) {
-                min = -1;
-                average = 10;
-                max = 40;
-            }
-
-            heatmapPortrayal.addEnconding(
-                    "Heatmap",
-                    new ColorEncoding(
-                            new TriColorMap(min, average, max, Color.RED, Color.WHITE, Color.BLUE),
-                            new Function<SeaTile, Double>() {
-                                @Override
-                                public Double apply(SeaTile tile) {
-                                    return regression.predict(tile, state.getHoursSinceStart(), fisher, state);
-                                }
-                            },
-                            false));
+            // evicted from the shared cache when the window closes
+            ColorfulGrid heatmapPortrayal = new ColorfulGrid(gui.guirandom, gui.getLayerCache());
+            // predictions (and their statistics) are computed in the background, once a step, by the grid
+            if (heatmap == null)
+                heatmap = new StatisticsColorEncoding(
+                        new TriColorMap(-1, 10, 40, Color.RED, Color.WHITE, Color.BLUE),
+                        new DoubleEncoding() {
+                            @Override
+                            public double encode(SeaTile tile) {
+                                // nobody fishes on land: keep it out of the map and of its statistics
+                                if (tile.isLand()) return Double.NaN;
+                                return regression.predict(tile, state.getHoursSinceStart(), fisher, state);
+                            }
+                        });
+            // the scale is fixed on the predictions as they are when the window opens
+            heatmap.recenter();
+            heatmapPortrayal.addEnconding("Heatmap", heatmap);
             Display2D heatmapDisplay = gui.setupPortrayal(heatmapPortrayal);
 
             // add printout to clicks
@@ -213,7 +207,49 @@ public class GeographicalRegressionWidget implements WidgetBuilder<JComponent, S
 
             JFrame heatmapFrame = gui.setupDisplay2D(heatmapPortrayal, heatmapDisplay, "Heatmap", false);
             heatmapPortrayal.setSelectedEncoding("Heatmap");
+            heatmapFrame.getContentPane().add(buildStatusBar(heatmapFrame, heatmap), BorderLayout.SOUTH);
+            heatmapFrame.pack();
             heatmapFrame.setVisible(true);
         }
+
+        /**
+         * a progress bar while the predictions are being computed, then their range, and whether the scale follows
+         * it
+         */
+        private static JComponent buildStatusBar(JFrame frame, StatisticsColorEncoding heatmap) {
+            JPanel status = new JPanel(new BorderLayout());
+            JProgressBar progressBar = new JProgressBar(0, 100);
+            JLabel summary = new JLabel("Computing...");
+            JCheckBox following = new JCheckBox("Follow range", heatmap.isRecentering());
+            following.setToolTipText("Recenter the colors on the predictions every step rather than keep them fixed");
+            following.addActionListener(e -> heatmap.setRecentering(following.isSelected()));
+            status.add(following, BorderLayout.WEST);
+            status.add(progressBar, BorderLayout.CENTER);
+            status.add(summary, BorderLayout.EAST);
+
+            Timer timer = new Timer(STATUS_REFRESH_MILLIS, e -> {
+                final EvaluationProgress progress = heatmap.getProgress();
+                progressBar.setVisible(!progress.isDone());
+                progressBar.setValue((int) (100 * progress.getFraction()));
+                final DoubleSummaryStatistics statistics = heatmap.getStatistics();
+                if (statistics != null && statistics.getCount() > 0)
+                    summary.setText(String.format(
+                            "min %.2f  avg %.2f  max %.2f",
+                            statistics.getMin(), statistics.getAverage(), statistics.getMax()));
+            });
+            frame.addWindowListener(new WindowAdapter() {
+                @Override
+                public void windowClosing(WindowEvent e) {
+                    timer.stop();
+                }
+
+                @Override
+                public void windowActivated(WindowEvent e) {
+                    if (!timer.isRunning()) timer.start();
+                }
+            });
+            timer.start();
+            return status;
+        }
     }
 }
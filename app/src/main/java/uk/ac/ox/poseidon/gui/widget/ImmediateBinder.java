@@ -34,6 +34,12 @@ import org.metawidget.widgetprocessor.iface.WidgetProcessor;
  */
 public class ImmediateBinder implements WidgetProcessor<JComponent, SwingMetawidget> {
 
+    /**
+     * client property set on a component while the inspector refreshes it from the model, so that the change isn't
+     * written back
+     */
+    public static final String REFRESHING = "poseidon.refreshing";
+
     /**
      * get standard components and make them call "save" if they are changed.
      * This way any change is immediately written to file
@@ -42,33 +48,37 @@ public class ImmediateBinder implements WidgetProcessor<JComponent, SwingMetawid
     public JComponent processWidget(
             JComponent jComponent, String s, Map<String, String> map, final SwingMetawidget metawidget) {
         if (jComponent instanceof JSpinner)
-            ((JSpinner) jComponent).addChangeListener(e -> writeToObject(metawidget, true));
+            ((JSpinner) jComponent).addChangeListener(e -> changed(jComponent, metawidget, true));
 
         if (jComponent instanceof JCheckBox)
-            ((JCheckBox) jComponent).addItemListener(e -> writeToObject(metawidget, true));
+            ((JCheckBox) jComponent).addItemListener(e -> changed(jComponent, metawidget, true));
 
         if (jComponent instanceof JTextComponent)
             ((JTextComponent) jComponent).getDocument().addDocumentListener(new DocumentListener() {
                 @Override
                 public void insertUpdate(DocumentEvent e) {
                     // this apparently is fonts and other stuff, not that useful!
-                    writeToObject(metawidget, false);
+                    changed(jComponent, metawidget, false);
                 }
 
                 @Override
                 public void removeUpdate(DocumentEvent e) {
-                    writeToObject(metawidget, false);
+                    changed(jComponent, metawidget, false);
                 }
 
                 @Override
                 public void changedUpdate(DocumentEvent e) {
-                    writeToObject(metawidget, false);
+                    changed(jComponent, metawidget, false);
                 }
             });
 
         return jComponent;
     }
 
+    private void changed(JComponent component, SwingMetawidget metawidget, boolean rebind) {
+        if (component.getClientProperty(REFRESHING) == null) writeToObject(metawidget, rebind);
+    }
+
     public void writeToObject(SwingMetawidget metawidget, boolean rebind) {
         metawidget.getWidgetProcessor(BeanUtilsBindingProcessor.class).save(metawidget);
         if (rebind)
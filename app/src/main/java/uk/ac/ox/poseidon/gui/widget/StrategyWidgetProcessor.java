@@ -24,7 +24,8 @@ import javax.swing.*;
 import org.apache.commons.beanutils.PropertyUtils;
 import org.metawidget.swing.SwingMetawidget;
 import org.metawidget.widgetprocessor.iface.WidgetProcessor;
-import sim.display.GUIState;
+import uk.ac.ox.oxfish.utility.AlgorithmFactory;
+import uk.ac.ox.poseidon.gui.FishGUI;
 
 /**
  * finds actual strategies and place a button to change them on the fly
@@ -36,9 +37,9 @@ public class StrategyWidgetProcessor implements WidgetProcessor<JComponent, Swin
      * strategies require fishstate reference to be instantiated from the factory so we can only use this
      * when a GUISTate already exists. It is also important for syncing anyway
      */
-    private final GUIState state;
+    private final FishGUI state;
 
-    public StrategyWidgetProcessor(GUIState state) {
+    public StrategyWidgetProcessor(FishGUI state) {
         this.state = state;
     }
 
@@ -93,25 +94,28 @@ public class StrategyWidgetProcessor implements WidgetProcessor<JComponent, Swin
                         null);
                 // if ok was pressed on the dialog
                 if (returned == JOptionPane.OK_OPTION) {
-                    final Object newStrategy = dialog.getSelected().apply(state.state);
-                    // use the beansutils to set the new value to the field
-                    try {
-                        synchronized (state.state.schedule) {
-                            PropertyUtils.setSimpleProperty(
-                                    // the object to modify
-                                    toModify,
-                                    // the name of the field
-                                    attributes.get("name"),
-                                    // the new value (table lookup)
-                                    newStrategy);
-                        }
-                    } catch (IllegalAccessException | InvocationTargetException | NoSuchMethodException e1) {
-                        System.err.print("failed to set new strategy! " + e1);
-                        e1.printStackTrace();
-                    }
-
-                    // reb
-                    metawidget.setToInspect(metawidget.getToInspect());
+                    final AlgorithmFactory factory = dialog.getSelected();
+                    // build and set the new strategy in the model thread, then rebind back here
+                    state.getCommands()
+                            .run(model -> {
+                                final Object newStrategy = factory.apply(model);
+                                // use the beansutils to set the new value to the field
+                                try {
+                                    PropertyUtils.setSimpleProperty(
+                                            // the object to modify
+                                            toModify,
+                                            // the name of the field
+                                            attributes.get("name"),
+                                            // the new value (table lookup)
+                                            newStrategy);
+                                } catch (IllegalAccessException
+                                        | InvocationTargetException
+                                        | NoSuchMethodException e1) {
+                                    System.err.print("failed to set new strategy! " + e1);
+                                    e1.printStackTrace();
+                                }
+                            })
+                            .thenRun(() -> metawidget.setToInspect(metawidget.getToInspect()));
                 }
             });
 
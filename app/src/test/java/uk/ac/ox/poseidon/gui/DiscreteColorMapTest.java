@@ -0,0 +1,47 @@
+/*
+ * POSEIDON, an agent-based model of fisheries
+ * Copyright (c) 2023, CoHESyS Lab, cohesys.lab@gmail.com.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.ox.poseidon.gui;
+
+import static org.junit.Assert.assertEquals;
+
+import ec.util.MersenneTwisterFast;
+import org.junit.Test;
+
+public class DiscreteColorMapTest {
+
+    @Test
+    public void eachLevelKeepsItsColor() {
+        DiscreteColorMap map = new DiscreteColorMap(new MersenneTwisterFast(0));
+        final int three = map.getRGB(3);
+        map.getRGB(100);
+        assertEquals(three, map.getRGB(3));
+        assertEquals(three, map.getRGB(3.7));
+        // below "no group" everything is "no group"
+        assertEquals(map.getRGB(-1), map.getRGB(-50));
+    }
+
+    @Test
+    public void hugeLevelsShareTheLastColor() {
+        DiscreteColorMap map = new DiscreteColorMap(new MersenneTwisterFast(0));
+        final int last = map.getRGB(DiscreteColorMap.MAX_LEVEL);
+        // neither allocates a palette as large as the level
+        assertEquals(last, map.getRGB(1e12));
+        assertEquals(last, map.getRGB(Integer.MAX_VALUE));
+    }
+}
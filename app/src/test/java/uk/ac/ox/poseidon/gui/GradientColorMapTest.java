@@ -0,0 +1,72 @@
+/*
+ * POSEIDON, an agent-based model of fisheries
+ * Copyright (c) 2023, CoHESyS Lab, cohesys.lab@gmail.com.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.ox.poseidon.gui;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import java.awt.*;
+import org.junit.Test;
+
+public class GradientColorMapTest {
+
+    @Test
+    public void interpolatesAndClamps() {
+        GradientColorMap map = new GradientColorMap(0, 100, Color.WHITE, Color.RED);
+
+        assertEquals(Color.WHITE.getRGB(), map.getRGB(0));
+        assertEquals(Color.WHITE.getRGB(), map.getRGB(-50));
+        assertEquals(Color.RED.getRGB(), map.getRGB(100));
+        assertEquals(Color.RED.getRGB(), map.getRGB(Double.POSITIVE_INFINITY));
+        // halfway the green and blue channels are halfway too (give or take a lookup slot)
+        Color half = map.getColor(50);
+        assertEquals(255, half.getRed());
+        assertEquals(127, half.getGreen(), 1);
+        assertEquals(127, half.getBlue(), 1);
+        // like SimpleColorMap, NaN is transparent
+        assertEquals(0, map.getAlpha(Double.NaN));
+    }
+
+    @Test
+    public void nonFiniteColor() {
+        GradientColorMap map = new GradientColorMap(0, 100, Color.WHITE, Color.RED, Color.BLACK);
+        assertEquals(Color.BLACK.getRGB(), map.getRGB(Double.NaN));
+        assertEquals(Color.BLACK.getRGB(), map.getRGB(Double.POSITIVE_INFINITY));
+        assertEquals(Color.RED.getRGB(), map.getRGB(1000));
+    }
+
+    @Test
+    public void movingLevelsChangesVersionAndColors() {
+        GradientColorMap map = new GradientColorMap(0, 100, Color.WHITE, Color.RED);
+        long version = map.getVersion();
+        int before = map.getRGB(100);
+        map.setLevels(0, 200);
+        assertNotEquals(version, map.getVersion());
+        assertNotEquals(before, map.getRGB(100));
+        assertEquals(Color.RED.getRGB(), map.getRGB(200));
+    }
+
+    @Test
+    public void triColorMapSplitsExactlyAtMid() {
+        TriColorMap map = new TriColorMap(-6000, 0, 6000, Color.BLUE, Color.CYAN, Color.GREEN, Color.BLACK);
+        assertEquals(Color.CYAN.getRGB(), map.getRGB(-0.0001));
+        assertEquals(Color.GREEN.getRGB(), map.getRGB(0));
+        assertEquals(Color.GRAY.getRGB(), map.getRGB(Double.NaN));
+    }
+}
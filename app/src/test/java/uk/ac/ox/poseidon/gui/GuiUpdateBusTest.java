@@ -0,0 +1,65 @@
+/*
+ * POSEIDON, an agent-based model of fisheries
+ * Copyright (c) 2023, CoHESyS Lab, cohesys.lab@gmail.com.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.ox.poseidon.gui;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import javax.swing.*;
+import org.junit.Test;
+
+public class GuiUpdateBusTest {
+
+    @Test
+    public void onlyTheLatestUpdatePerKeyRuns() throws Exception {
+        // a long frame so the timer never flushes on its own during the test
+        GuiUpdateBus bus = new GuiUpdateBus(60_000);
+        bus.start();
+        List<String> seen = new ArrayList<>();
+        for (int step = 0; step < 100; step++) {
+            final int current = step;
+            bus.post("label", () -> seen.add("label " + current));
+        }
+        bus.post("chart", () -> seen.add("chart"));
+        assertEquals(2, bus.getPendingCount());
+
+        SwingUtilities.invokeAndWait(bus::flush);
+        bus.stop();
+
+        List<String> expected = new ArrayList<>();
+        expected.add("label 99");
+        expected.add("chart");
+        assertEquals(expected, seen);
+        assertEquals(101, bus.getPosted());
+        assertEquals(99, bus.getCoalesced());
+        assertEquals(1, bus.getFlushes());
+    }
+
+    @Test
+    public void stoppedBusDropsUpdates() {
+        GuiUpdateBus bus = new GuiUpdateBus(60_000);
+        bus.start();
+        bus.post("label", () -> {});
+        bus.stop();
+        bus.post("label", () -> {});
+        assertEquals(0, bus.getPendingCount());
+        assertEquals(2, bus.getDropped());
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * POSEIDON, an agent-based model of fisheries
+ * Copyright (c) 2023, CoHESyS Lab, cohesys.lab@gmail.com.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.ox.poseidon.gui;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import javax.swing.*;
+import org.junit.Test;
+
+public class InspectorRefreshSchedulerTest {
+
+    private static class SlowInspector extends JPanel implements InspectorRefreshScheduler.Refreshable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final boolean onScreen;
+
+        private int refreshes = 0;
+
+        private Boolean showing = null;
+
+        private SlowInspector(boolean onScreen) {
+            this.onScreen = onScreen;
+        }
+
+        @Override
+        public void refresh() {
+            refreshes++;
+            try {
+                Thread.sleep(2);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        public void setShowing(boolean showing) {
+            this.showing = showing;
+        }
+    }
+
+    @Test
+    public void spreadsRefreshesAcrossFramesAndSkipsHiddenOnes() {
+        InspectorRefreshScheduler scheduler =
+                new InspectorRefreshScheduler(1, component -> ((SlowInspector) component).onScreen);
+        List<SlowInspector> inspectors = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            SlowInspector inspector = new SlowInspector(i % 2 == 0);
+            inspectors.add(inspector);
+            scheduler.register(inspector);
+        }
+
+        // each refresh blows the 1ms budget, so a frame gets through very few of them
+        scheduler.refreshSome();
+        assertTrue(scheduler.getRefreshed() <= 1);
+        assertTrue(scheduler.getDeferred() > 0);
+
+        for (int frame = 0; frame < 20; frame++) scheduler.refreshSome();
+        for (SlowInspector inspector : inspectors) {
+            if (inspector.onScreen) assertTrue(inspector.refreshes > 0);
+            else {
+                assertEquals(0, inspector.refreshes);
+                assertEquals(Boolean.FALSE, inspector.showing);
+            }
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * POSEIDON, an agent-based model of fisheries
+ * Copyright (c) 2023, CoHESyS Lab, cohesys.lab@gmail.com.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.ox.poseidon.gui;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import javax.imageio.ImageIO;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import uk.ac.ox.oxfish.model.FishState;
+import uk.ac.ox.oxfish.model.scenario.PrototypeScenario;
+
+public class OffscreenRendererTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void writesFramesOfTheRequestedSize() throws Exception {
+        System.setProperty("java.awt.headless", "true");
+        PrototypeScenario scenario = new PrototypeScenario();
+        scenario.setFishers(2);
+        FishState state = new FishState(0);
+        state.setScenario(scenario);
+        OffscreenRenderer renderer = new OffscreenRenderer(folder.getRoot().toPath(), 120, 80, 1);
+        renderer.setEncoders(1);
+        state.registerStartable(renderer);
+
+        state.start();
+        while (state.getDay() < 2) state.schedule.step(state);
+        // waits for the frames still being written
+        renderer.turnOff();
+
+        assertTrue(renderer.getFrame() > 0);
+        File first = new File(folder.getRoot(), "frame_000000.png");
+        assertTrue(first.exists());
+        BufferedImage image = ImageIO.read(first);
+        assertEquals(120, image.getWidth());
+        assertEquals(80, image.getHeight());
+    }
+
+    @Test
+    public void canBeCheckpointedWithTheModel() throws Exception {
+        OffscreenRenderer renderer = new OffscreenRenderer(folder.getRoot().toPath(), 120, 80, 1);
+        renderer.setEncoding("Habitat");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(renderer);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            assertEquals("Habitat", ((OffscreenRenderer) in.readObject()).getEncoding());
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * POSEIDON, an agent-based model of fisheries
+ * Copyright (c) 2023, CoHESyS Lab, cohesys.lab@gmail.com.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.ox.poseidon.gui;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Test;
+
+public class PropertyGettersTest {
+
+    public static class Boat {
+
+        private final Engine engine = new Engine();
+
+        public Engine getEngine() {
+            return engine;
+        }
+
+        public boolean isMoored() {
+            return true;
+        }
+    }
+
+    // not public: its getter can still be read
+    static class Engine {
+
+        public double getPower() {
+            return 42;
+        }
+    }
+
+    @Test
+    public void readsNestedAndBooleanProperties() throws Throwable {
+        Boat boat = new Boat();
+        assertEquals(42d, PropertyGetters.read(boat, Arrays.asList("engine", "power")));
+        assertEquals(true, PropertyGetters.read(boat, Collections.singletonList("moored")));
+        // looked up once per class
+        assertSame(PropertyGetters.gettersOf(Boat.class), PropertyGetters.gettersOf(Boat.class));
+    }
+
+    @Test(expected = NoSuchMethodException.class)
+    public void unknownPropertiesThrow() throws Throwable {
+        PropertyGetters.read(new Boat(), Collections.singletonList("sails"));
+    }
+}
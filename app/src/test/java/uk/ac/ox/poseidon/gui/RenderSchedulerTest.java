@@ -0,0 +1,72 @@
+/*
+ * POSEIDON, an agent-based model of fisheries
+ * Copyright (c) 2023, CoHESyS Lab, cohesys.lab@gmail.com.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.ox.poseidon.gui;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class RenderSchedulerTest {
+
+    private static final long MILLISECOND = 1_000_000;
+
+    @Test
+    public void fastModelFastForwardsBetweenFrames() {
+        RenderScheduler scheduler = new RenderScheduler(25, 1000);
+        // steps take 1ms and painting (10ms, on the EDT) doesn't hold them up: 40 steps per 40ms frame
+        long now = 0;
+        int frames = 0;
+        for (int step = 0; step < 1000; step++) {
+            now += MILLISECOND;
+            if (scheduler.frameDue(now)) {
+                scheduler.framePainted(now, now + 10 * MILLISECOND);
+                frames++;
+            }
+        }
+        assertEquals(40, scheduler.getStepsPerFrame());
+        // roughly 25 frames a second of simulated time
+        assertEquals(25, frames / (now / 1e9), 2);
+    }
+
+    @Test
+    public void slowModelGetsAFrameEveryStep() {
+        RenderScheduler scheduler = new RenderScheduler(25, 1000);
+        long now = 0;
+        for (int step = 0; step < 100; step++) {
+            now += 100 * MILLISECOND;
+            assertTrue(scheduler.frameDue(now));
+            scheduler.framePainted(now, now + 5 * MILLISECOND);
+            now += 5 * MILLISECOND;
+        }
+        assertEquals(1, scheduler.getStepsPerFrame());
+    }
+
+    @Test
+    public void slowPaintingStretchesTheFrames() {
+        RenderScheduler scheduler = new RenderScheduler(25, 1000);
+        // frames take 80ms to paint, twice the frame period: no point asking for more than one per 80 steps
+        long now = 0;
+        for (int step = 0; step < 1000; step++) {
+            now += MILLISECOND;
+            if (scheduler.frameDue(now)) scheduler.framePainted(now, now + 80 * MILLISECOND);
+        }
+        assertEquals(80, scheduler.getStepsPerFrame());
+    }
+}
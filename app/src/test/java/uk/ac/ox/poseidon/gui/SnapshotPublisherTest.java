@@ -0,0 +1,141 @@
+/*
+ * POSEIDON, an agent-based model of fisheries
+ * Copyright (c) 2023, CoHESyS Lab, cohesys.lab@gmail.com.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.ox.poseidon.gui;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+
+public class SnapshotPublisherTest {
+
+    public static class Boat {
+
+        private final StringBuilder log = new StringBuilder("at sea");
+
+        private Object engine = new Diesel();
+
+        public StringBuilder getLog() {
+            return log;
+        }
+
+        public int getCrew() {
+            return 3;
+        }
+
+        public Object getEngine() {
+            return engine;
+        }
+    }
+
+    public static class Diesel {
+
+        public double getPower() {
+            return 42;
+        }
+    }
+
+    public static class Sail {
+
+        public double getPower() {
+            return 1;
+        }
+    }
+
+    @Test
+    public void onlyImmutableValuesAreCopied() {
+        SnapshotPublisher publisher = new SnapshotPublisher();
+        Boat boat = new Boat();
+        SnapshotPublisher.Source source = publisher.register(boat);
+        List<List<String>> paths = Arrays.asList(
+                Collections.singletonList("crew"), Collections.singletonList("log"), Collections.singletonList("log"));
+        source.setPaths(paths, new boolean[] {false, true, false});
+        publisher.publishAll(7);
+
+        PropertySnapshot snapshot = source.getLatest();
+        assertEquals(7, snapshot.getStep());
+        assertEquals(3, snapshot.get(0));
+        // a label gets the text as it was at the end of the step, not the builder the model keeps changing
+        assertEquals("at sea", snapshot.get(1));
+        assertSame(PropertySnapshot.UNREADABLE, snapshot.get(2));
+        boat.getLog().append(" and sinking");
+        assertEquals("at sea", snapshot.get(1));
+    }
+
+    @Test
+    public void snapshotsTellWhatClassEachPropertyWasReadFrom() {
+        SnapshotPublisher publisher = new SnapshotPublisher();
+        Boat boat = new Boat();
+        SnapshotPublisher.Source source = publisher.register(boat);
+        source.setPaths(
+                Arrays.asList(Collections.singletonList("crew"), Arrays.asList("engine", "power")),
+                new boolean[] {false, false});
+
+        publisher.publishAll(1);
+        assertSame(Boat.class, source.getLatest().getHolder(0));
+        assertSame(Diesel.class, source.getLatest().getHolder(1));
+        assertEquals(42d, source.getLatest().get(1));
+
+        // the model swaps the engine: the inspector can tell its widgets are for something else
+        boat.engine = new Sail();
+        publisher.publishAll(2);
+        assertSame(Sail.class, source.getLatest().getHolder(1));
+        boat.engine = null;
+        publisher.publishAll(3);
+        assertNull(source.getLatest().getHolder(1));
+        assertSame(PropertySnapshot.UNREADABLE, source.getLatest().get(1));
+    }
+
+    @Test
+    public void nothingIsCopiedWhileTheInspectorIsHidden() {
+        SnapshotPublisher publisher = new SnapshotPublisher();
+        SnapshotPublisher.Source source = publisher.register(new Boat());
+        source.setPaths(Collections.singletonList(Collections.singletonList("crew")), new boolean[] {false});
+
+        source.setShowing(false);
+        publisher.publishAll(1);
+        assertNull(source.getLatest());
+
+        source.setShowing(true);
+        publisher.publishAll(2);
+        assertEquals(2, source.getLatest().getStep());
+        source.setShowing(false);
+        publisher.publishAll(3);
+        assertEquals(2, source.getLatest().getStep());
+    }
+
+    @Test
+    public void snapshotsOfOldPathsAreNotHandedOut() {
+        SnapshotPublisher publisher = new SnapshotPublisher();
+        SnapshotPublisher.Source source = publisher.register(new Boat());
+        source.setPaths(Collections.singletonList(Collections.singletonList("crew")), new boolean[] {false});
+        publisher.publishAll(1);
+        assertEquals(3, source.getLatest().get(0));
+
+        // the widgets were rebuilt: until the model publishes again there is nothing for them
+        source.setPaths(Collections.singletonList(Collections.singletonList("log")), new boolean[] {true});
+        assertNull(source.getLatest());
+        publisher.publishAll(2);
+        assertEquals("at sea", source.getLatest().get(0));
+    }
+}
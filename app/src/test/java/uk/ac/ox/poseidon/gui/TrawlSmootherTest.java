@@ -0,0 +1,110 @@
+/*
+ * POSEIDON, an agent-based model of fisheries
+ * Copyright (c) 2023, CoHESyS Lab, cohesys.lab@gmail.com.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.ox.poseidon.gui;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+import org.junit.Test;
+
+public class TrawlSmootherTest {
+
+    @Test
+    public void movingAverageDropsOldDays() {
+        MovingAverageTrawlSmoother smoother = new MovingAverageTrawlSmoother(2, 1, 3);
+        double[][] smoothed = new double[2][1];
+
+        // the window starts with a day of no trawls
+        assertEquals(3, smoother.step(events(0, 0, 6), smoothed), .0001);
+        assertEquals(3, smoothed[0][0], .0001);
+        assertEquals(3, smoother.step(events(0, 0, 3, 1, 0, 3), smoothed), .0001);
+        assertEquals(1, smoothed[1][0], .0001);
+        // from now on the window is full: the first zero and then the 6 fall out of it
+        smoother.step(events(1, 0, 3), smoothed);
+        assertEquals(3, smoothed[0][0], .0001);
+        assertEquals(3, smoother.step(events(1, 0, 3), smoothed), .0001);
+        assertEquals(1, smoothed[0][0], .0001);
+        assertEquals(3, smoothed[1][0], .0001);
+        // nobody fishes for a while: everything drops out
+        smoother.step(events(), smoothed);
+        smoother.step(events(), smoothed);
+        assertEquals(0, smoother.step(events(), smoothed), .0001);
+        assertEquals(0, smoothed[0][0], .0001);
+        assertEquals(0, smoothed[1][0], .0001);
+    }
+
+    @Test
+    public void movingAverageMatchesAveragingEveryCell() {
+        final int width = 7;
+        final int height = 5;
+        final int window = 4;
+        MovingAverageTrawlSmoother smoother = new MovingAverageTrawlSmoother(width, height, window);
+        double[][] smoothed = new double[width][height];
+        int[][][] history = new int[200][width][height];
+        Random random = new Random(0);
+        for (int day = 1; day < history.length; day++) {
+            TrawlEvents today = new TrawlEvents();
+            for (int i = random.nextInt(4); i > 0; i--) {
+                int x = random.nextInt(width);
+                int y = random.nextInt(height);
+                int count = random.nextInt(3) + 1;
+                history[day][x][y] += count;
+                today.add(x, y, count);
+            }
+            double maximum = smoother.step(today, smoothed);
+
+            double expectedMaximum = 0;
+            int days = Math.min(day + 1, window);
+            for (int x = 0; x < width; x++) {
+                for (int y = 0; y < height; y++) {
+                    double sum = 0;
+                    for (int past = day - days + 1; past <= day; past++) sum += history[past][x][y];
+                    assertEquals(sum / days, smoothed[x][y], .0001);
+                    expectedMaximum = Math.max(expectedMaximum, sum / days);
+                }
+            }
+            assertEquals(expectedMaximum, maximum, .0001);
+        }
+    }
+
+    @Test
+    public void exponentialDecaysWithoutTouchingCells() {
+        ExponentialTrawlSmoother smoother = new ExponentialTrawlSmoother(1, 1, .5);
+        double[][] smoothed = new double[1][1];
+
+        assertEquals(4, smoother.step(events(0, 0, 8), smoothed), .0001);
+        assertEquals(4, smoothed[0][0] / smoother.getScale(), .0001);
+        assertEquals(2, smoother.step(events(), smoothed), .0001);
+        assertEquals(2, smoothed[0][0] / smoother.getScale(), .0001);
+        // long enough to rescale more than once
+        for (int day = 0; day < 1000; day++) smoother.step(events(), smoothed);
+        assertEquals(3, smoother.step(events(0, 0, 6), smoothed), .0001);
+        assertEquals(3, smoothed[0][0] / smoother.getScale(), .0001);
+        assertEquals(1d / 3, ExponentialTrawlSmoother.equivalentToWindow(1, 1, 5).getAlpha(), .0001);
+    }
+
+    /**
+     * x, y, count triplets
+     */
+    private static TrawlEvents events(int... cells) {
+        TrawlEvents events = new TrawlEvents();
+        for (int i = 0; i < cells.length; i += 3) events.add(cells[i], cells[i + 1], cells[i + 2]);
+        return events;
+    }
+}
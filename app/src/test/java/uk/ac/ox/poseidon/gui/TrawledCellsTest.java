@@ -0,0 +1,67 @@
+/*
+ * POSEIDON, an agent-based model of fisheries
+ * Copyright (c) 2023, CoHESyS Lab, cohesys.lab@gmail.com.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.ox.poseidon.gui;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Collections;
+import org.junit.Test;
+import sim.field.grid.IntGrid2D;
+import uk.ac.ox.oxfish.fisher.Fisher;
+
+public class TrawledCellsTest {
+
+    @Test
+    public void cellsAreReportedUntilTheDailyReset() {
+        TrawledCells cells = new TrawledCells(3, 2);
+        IntGrid2D trawls = new IntGrid2D(3, 2);
+        trawls.field[2][1] = 4;
+        trawls.field[0][0] = 1;
+        TrawlEvents events = new TrawlEvents();
+
+        // nothing is found without looking: the map is never scanned
+        cells.collect(Collections.<Fisher>emptyList(), trawls, events);
+        assertEquals(0, events.size());
+
+        // a boat fished there on its trip, and has left since
+        cells.look(trawls, 2, 1);
+        cells.look(trawls, 1, 1);
+        cells.report(trawls, events);
+        assertEquals(1, events.size());
+        assertEquals(2, events.getX(0));
+        assertEquals(1, events.getY(0));
+        assertEquals(4, events.getCount(0));
+
+        // still reported next step, with the trawls since, without looking again
+        trawls.field[2][1] = 5;
+        events.clear();
+        cells.collect(Collections.<Fisher>emptyList(), trawls, events);
+        assertEquals(1, events.size());
+        assertEquals(5, events.getCount(0));
+
+        // once the map is reset the cell is forgotten
+        trawls.field[2][1] = 0;
+        events.clear();
+        cells.collect(Collections.<Fisher>emptyList(), trawls, events);
+        assertEquals(0, events.size());
+        trawls.field[2][1] = 2;
+        cells.report(trawls, events);
+        assertEquals(0, events.size());
+    }
+}
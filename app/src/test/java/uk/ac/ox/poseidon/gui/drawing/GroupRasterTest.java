@@ -0,0 +1,51 @@
+/*
+ * POSEIDON, an agent-based model of fisheries
+ * Copyright (c) 2023, CoHESyS Lab, cohesys.lab@gmail.com.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.ox.poseidon.gui.drawing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.awt.geom.Rectangle2D;
+import org.junit.Test;
+
+public class GroupRasterTest {
+
+    @Test
+    public void outlineFollowsTheBoundaryBetweenTwoHalves() {
+        // left two columns group 0, right two group 1
+        GroupRaster groups = new GroupRaster(4, 3, (x, y) -> x < 2 ? 0 : 1);
+
+        assertEquals(1, groups.get(3, 2));
+        assertEquals(3, groups.getBoundaryEdges());
+        // a single vertical line at x=2 spanning the whole height
+        Rectangle2D bounds = groups.getOutline().getBounds2D();
+        assertEquals(2, bounds.getMinX(), .0001);
+        assertEquals(2, bounds.getMaxX(), .0001);
+        assertEquals(0, bounds.getMinY(), .0001);
+        assertEquals(3, bounds.getMaxY(), .0001);
+        assertSame(groups.getOutline(), groups.getOutline());
+    }
+
+    @Test
+    public void uniformMapHasNoOutline() {
+        GroupRaster groups = new GroupRaster(3, 3, (x, y) -> GroupRaster.NO_GROUP);
+        assertEquals(0, groups.getBoundaryEdges());
+        assertEquals(0, groups.getOutline().getBounds2D().getWidth(), .0001);
+    }
+}
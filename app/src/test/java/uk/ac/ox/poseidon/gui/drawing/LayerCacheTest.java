@@ -0,0 +1,51 @@
+/*
+ * POSEIDON, an agent-based model of fisheries
+ * Copyright (c) 2023, CoHESyS Lab, cohesys.lab@gmail.com.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.ox.poseidon.gui.drawing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.Collections;
+import org.junit.Test;
+import sim.field.grid.ObjectGrid2D;
+
+public class LayerCacheTest {
+
+    @Test
+    public void displaysShareRastersUntilTheLastOneCloses() {
+        LayerCache cache = new LayerCache();
+        ObjectGrid2D grid = new ObjectGrid2D(3, 2);
+        ColorEncoding heatmap = new ColorEncoding(null, tile -> 1, false);
+        Object main = new Object();
+        Object mirror = new Object();
+
+        EncodingRaster raster = cache.get(main, grid, heatmap);
+        assertSame(raster, cache.get(mirror, grid, heatmap));
+        assertNotSame(raster, cache.get(main, new ObjectGrid2D(3, 2), heatmap));
+        assertEquals(2, cache.size());
+
+        cache.release(main);
+        assertEquals(1, cache.size());
+        assertSame(raster, cache.get(mirror, grid, heatmap));
+
+        cache.retain(mirror, Collections.emptySet());
+        assertEquals(0, cache.size());
+    }
+}
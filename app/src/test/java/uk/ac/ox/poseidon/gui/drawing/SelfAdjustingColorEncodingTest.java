@@ -0,0 +1,81 @@
+/*
+ * POSEIDON, an agent-based model of fisheries
+ * Copyright (c) 2023, CoHESyS Lab, cohesys.lab@gmail.com.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.ox.poseidon.gui.drawing;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.awt.*;
+import java.util.Arrays;
+import org.junit.Test;
+import uk.ac.ox.poseidon.gui.GradientColorMap;
+
+public class SelfAdjustingColorEncodingTest {
+
+    @Test
+    public void levelsOnlyChangeBetweenFrames() {
+        GradientColorMap map = new GradientColorMap(0, 10, Color.WHITE, Color.RED);
+        SelfAdjustingColorEncoding encoding = new SelfAdjustingColorEncoding(map, tile -> 0, false, 10, 0);
+
+        encoding.observe(new double[] {1, 50, Double.NaN});
+        assertEquals(10, map.getMaxLevel(), 0);
+        encoding.prepareFrame();
+        assertEquals(50, map.getMaxLevel(), 0);
+        assertEquals(0, map.getMinLevel(), 0);
+    }
+
+    @Test
+    public void decayShrinksTheRangeBack() {
+        GradientColorMap map = new GradientColorMap(0, 10, Color.WHITE, Color.RED);
+        SelfAdjustingColorEncoding encoding = new SelfAdjustingColorEncoding(map, tile -> 0, false, 10, 0);
+        encoding.observe(new double[] {110});
+        encoding.prepareFrame();
+        assertEquals(110, map.getMaxLevel(), 0);
+
+        // without decay the range never shrinks
+        encoding.observe(new double[] {1});
+        encoding.prepareFrame();
+        assertEquals(110, map.getMaxLevel(), 0);
+
+        // halfway back to the narrowest range, each time
+        encoding.setDecay(.5);
+        encoding.observe(new double[] {1});
+        encoding.prepareFrame();
+        assertEquals(60, map.getMaxLevel(), .0001);
+        encoding.observe(new double[] {1});
+        encoding.prepareFrame();
+        assertEquals(35, map.getMaxLevel(), .0001);
+    }
+
+    @Test
+    public void percentileClipsOutliers() {
+        double[] values = new double[1000];
+        Arrays.fill(values, 5);
+        values[0] = -1000;
+        values[1] = 1000;
+        values[2] = 10;
+
+        double[] range = SelfAdjustingColorEncoding.observedRange(values, .99);
+        assertEquals(5, range[0], 2);
+        assertEquals(5, range[1], 2);
+        assertArrayEquals(new double[] {-1000, 1000}, SelfAdjustingColorEncoding.observedRange(values, 1), 0);
+        assertNull(SelfAdjustingColorEncoding.observedRange(new double[] {Double.NaN}, 1));
+    }
+}
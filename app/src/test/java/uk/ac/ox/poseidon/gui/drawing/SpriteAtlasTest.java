@@ -0,0 +1,59 @@
+/*
+ * POSEIDON, an agent-based model of fisheries
+ * Copyright (c) 2023, CoHESyS Lab, cohesys.lab@gmail.com.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.ox.poseidon.gui.drawing;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.Collections;
+import org.junit.Test;
+
+public class SpriteAtlasTest {
+
+    @Test
+    public void halvingIgnoresTransparentPixels() {
+        int red = 0xFFFF0000;
+        int[] half = SpriteAtlas.halve(new int[] {red, 0, 0, red}, 2, 2);
+        // half as opaque, but still pure red rather than a darker red
+        assertArrayEquals(new int[] {0x7FFF0000}, half);
+    }
+
+    @Test
+    public void tintsBlackAndPicksTheClosestSize() {
+        BufferedImage icon = new BufferedImage(16, 8, BufferedImage.TYPE_INT_ARGB);
+        icon.setRGB(0, 0, Color.BLACK.getRGB());
+        icon.setRGB(1, 0, Color.WHITE.getRGB());
+        SpriteAtlas atlas = SpriteAtlas.build(Collections.singletonList(icon), Collections.singletonList(Color.RED));
+
+        SpriteAtlas.Sprite sprite = atlas.get(icon, Color.RED);
+        assertSame(sprite, atlas.get(icon, Color.RED));
+        assertEquals(Color.RED.getRGB(), sprite.getOriginal().getRGB(0, 0));
+        assertEquals(Color.WHITE.getRGB(), sprite.getOriginal().getRGB(1, 0));
+        assertEquals(Color.BLACK.getRGB(), atlas.get(icon, SpriteAtlas.UNTINTED).getOriginal().getRGB(0, 0));
+
+        // 64, 32, 16, 8, 4, 2 pixels wide
+        assertEquals(6, sprite.getLevels());
+        assertEquals(16, sprite.forCell(17, 17).getWidth(null));
+        assertEquals(4, sprite.forCell(3.5, 3.5).getWidth(null));
+        assertEquals(64, sprite.forCell(1000, 1000).getWidth(null));
+    }
+}
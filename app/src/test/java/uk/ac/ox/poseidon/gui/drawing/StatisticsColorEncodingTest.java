@@ -0,0 +1,83 @@
+/*
+ * POSEIDON, an agent-based model of fisheries
+ * Copyright (c) 2023, CoHESyS Lab, cohesys.lab@gmail.com.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.ox.poseidon.gui.drawing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.awt.*;
+import org.junit.Test;
+import uk.ac.ox.poseidon.gui.TriColorMap;
+
+public class StatisticsColorEncodingTest {
+
+    @Test
+    public void recentersOnTheValuesBetweenFrames() {
+        TriColorMap map = new TriColorMap(-1, 10, 40, Color.RED, Color.WHITE, Color.BLUE);
+        StatisticsColorEncoding encoding = new StatisticsColorEncoding(map, tile -> 0);
+        assertNull(encoding.getStatistics());
+
+        encoding.observe(new double[] {0, 1, 5, Double.NaN, Double.NEGATIVE_INFINITY});
+        assertEquals(3, encoding.getStatistics().getCount());
+        assertEquals(10, map.getMid(), 0);
+        encoding.prepareFrame();
+        assertEquals(0, map.getMin(), 0);
+        assertEquals(2, map.getMid(), 0);
+        assertEquals(5, map.getMax(), 0);
+    }
+
+    @Test
+    public void fallsBackWhenThereIsNoRange() {
+        TriColorMap map = new TriColorMap(0, 1, 2, Color.RED, Color.WHITE, Color.BLUE);
+        StatisticsColorEncoding encoding = new StatisticsColorEncoding(map, tile -> 0);
+        encoding.observe(new double[] {3, 3});
+        encoding.prepareFrame();
+        assertEquals(-1, map.getMin(), 0);
+        assertEquals(10, map.getMid(), 0);
+        assertEquals(40, map.getMax(), 0);
+    }
+
+    @Test
+    public void keepsTheScaleUnlessAskedToMoveIt() {
+        TriColorMap map = new TriColorMap(-1, 10, 40, Color.RED, Color.WHITE, Color.BLUE);
+        StatisticsColorEncoding encoding = new StatisticsColorEncoding(map, tile -> 0);
+        encoding.observe(new double[] {0, 2, 4});
+        encoding.prepareFrame();
+        assertEquals(4, map.getMax(), 0);
+
+        // the predictions change, the colors don't
+        encoding.observe(new double[] {0, 10, 20});
+        encoding.prepareFrame();
+        assertEquals(4, map.getMax(), 0);
+        assertEquals(20, encoding.getStatistics().getMax(), 0);
+
+        encoding.recenter();
+        encoding.observe(new double[] {0, 10, 20});
+        encoding.prepareFrame();
+        assertEquals(20, map.getMax(), 0);
+        encoding.observe(new double[] {0, 15, 30});
+        encoding.prepareFrame();
+        assertEquals(20, map.getMax(), 0);
+
+        encoding.setRecentering(true);
+        encoding.observe(new double[] {0, 15, 30});
+        encoding.prepareFrame();
+        assertEquals(30, map.getMax(), 0);
+    }
+}